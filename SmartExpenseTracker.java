@@ -1,18 +1,55 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 /**
  * SmartExpenseTracker.java
@@ -27,7 +64,15 @@ import java.util.stream.Collectors;
  * javac SmartExpenseTracker.java
  * java SmartExpenseTracker
  *
- * Data files created in user's working directory: users.txt and transactions.csv
+ * Data files created in user's working directory: users.txt and transactions.csv.
+ * Edits are appended to transactions.journal and folded back into transactions.csv
+ * in the background once the journal grows large; each such compaction also writes
+ * transactions.snap, a binary copy of the CSV that is used for fast startup.
+ *
+ * Very large ledgers can be held column-wise in memory with:
+ * java -Dtracker.store=columnar SmartExpenseTracker
+ * Journal writes are synced to disk per commit by default; use
+ * -Dtracker.fsync=interval (with -Dtracker.fsync.interval=<millis>) or none to relax that.
  */
 public class SmartExpenseTracker {
     public static void main(String[] args) {
@@ -41,137 +86,3020 @@ public class SmartExpenseTracker {
     }
 }
 
-// -------------------- Model --------------------
-class Transaction {
-    enum Type { INCOME, EXPENSE }
-    LocalDate date;
-    String category;
-    String description;
-    double amount;
-    Type type;
+// -------------------- Model --------------------
+class Transaction {
+    enum Type { INCOME, EXPENSE }
+    LocalDate date;
+    String category;
+    String description;
+    long amount; // in cents
+    Type type;
+
+    static DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // New entries must fall in this range; loaded rows may not, and BalanceIndex buckets those at its ends
+    static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
+    static final LocalDate MAX_DATE = LocalDate.of(2199, 12, 31);
+    static final int MIN_DAY = (int) MIN_DATE.toEpochDay();
+    static final int MAX_DAY = (int) MAX_DATE.toEpochDay();
+
+    Transaction(LocalDate date, String category, String description, long amount, Type type) {
+        this.date = date;
+        this.category = category;
+        this.description = description;
+        this.amount = amount;
+        this.type = type;
+    }
+
+    /** Returns date, or throws DateTimeException when it lies outside MIN_DATE..MAX_DATE; for new entries. */
+    static LocalDate checkDate(LocalDate date) {
+        if (date.isBefore(MIN_DATE) || date.isAfter(MAX_DATE)) {
+            throw new DateTimeException("Date out of range " + MIN_DATE + ".." + MAX_DATE + ": " + date);
+        }
+        return date;
+    }
+
+    /** The epoch day of any date, clamped to the int range stores hold days in. */
+    static int clampedDay(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    String toCSV() {
+        CsvRowEncoder enc = new CsvRowEncoder();
+        return new String(enc.buffer(), 0, enc.encode(this));
+    }
+
+    static Transaction fromCSV(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return new TransactionParser().parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+}
+
+/**
+ * Fixed-point money helpers. Amounts are held as a long count of cents; these
+ * parse and format the "12.34" decimal form without going through double.
+ */
+class Money {
+    private Money() {}
+
+    /**
+     * Parses a decimal amount into cents, rounding extra fraction digits half up.
+     * Throws NumberFormatException for anything that is not a decimal number.
+     */
+    static long parse(CharSequence s) {
+        int n = s.length();
+        int i = 0;
+        boolean neg = n > 0 && s.charAt(0) == '-';
+        if (neg) i++;
+        long units = 0;
+        int digits = 0;
+        int scale = -1;
+        int firstDropped = 0;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (scale < 2) {
+                    units = units * 10 + (c - '0');
+                    digits++;
+                    if (scale >= 0) scale++;
+                } else if (scale++ == 2) {
+                    firstDropped = c - '0';
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        // Fraction digits still missing from units, which then counts cents
+        int pad = 2 - Math.min(Math.max(scale, 0), 2);
+        // 18 digits of cents always fit in a long; BigDecimal takes longer ones and rejects overflow
+        if (i < n || digits == 0 || digits + pad > 18) return parseSlow(s);
+        for (int k = 0; k < pad; k++) units *= 10;
+        if (firstDropped >= 5) units++;
+        return neg ? -units : units;
+    }
+
+    // Exponents, surrounding blanks and very long numbers
+    private static long parseSlow(CharSequence s) {
+        try {
+            return new BigDecimal(s.toString().trim()).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + s);
+        }
+    }
+
+    static String format(long cents) {
+        char[] buf = new char[24];
+        return new String(buf, 0, formatTo(cents, buf, 0));
+    }
+
+    /** Writes cents as "-123.45" at buf[pos] and returns the end position; needs up to 22 chars. */
+    static int formatTo(long cents, char[] buf, int pos) {
+        if (cents < 0) buf[pos++] = '-';
+        // Negate the parts rather than the whole so Long.MIN_VALUE formats correctly
+        long whole = Math.abs(cents / 100);
+        int frac = (int) Math.abs(cents % 100);
+        int width = 1;
+        for (long w = whole; w >= 10; w /= 10) width++;
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + whole % 10);
+            whole /= 10;
+        }
+        pos += width;
+        buf[pos++] = '.';
+        buf[pos++] = (char) ('0' + frac / 10);
+        buf[pos++] = (char) ('0' + frac % 10);
+        return pos;
+    }
+}
+
+/**
+ * Formats transactions as CSV rows into a reused char buffer, so writing a row
+ * costs no intermediate Strings: ISO dates, quotes doubled, commas
+ * backslash-escaped and amounts as two-decimal {@link Money} values.
+ * Instances are not thread safe.
+ */
+class CsvRowEncoder {
+    private char[] buf = new char[128];
+    private int len;
+
+    /** Writes t as one CSV row, without a line terminator. */
+    void write(Transaction t, Writer w) throws IOException {
+        w.write(buf, 0, encode(t));
+    }
+
+    char[] buffer() { return buf; }
+
+    /** Writes row of store as one CSV row, without a line terminator. */
+    void write(LedgerStore store, int row, Writer w) throws IOException {
+        w.write(buf, 0, encode(LocalDate.ofEpochDay(store.epochDay(row)), store.category(row),
+                store.description(row), store.amount(row), store.type(row)));
+    }
+
+    /** Encodes t into {@link #buffer()} and returns the number of chars written. */
+    int encode(Transaction t) {
+        return encode(t.date, t.category, t.description, t.amount, t.type);
+    }
+
+    private int encode(LocalDate date, String category, String description, long amount, Transaction.Type type) {
+        len = 0;
+        appendDate(date);
+        append(',');
+        appendEscaped(category);
+        append(',');
+        appendEscaped(description);
+        append(',');
+        appendAmount(amount);
+        append(',');
+        appendAscii(type.name());
+        return len;
+    }
+
+    private void appendDate(LocalDate d) {
+        int y = d.getYear();
+        if (y < 1 || y > 9999) {
+            appendAscii(d.format(Transaction.fmt));
+            return;
+        }
+        ensure(10);
+        digits(y, 4);
+        buf[len++] = '-';
+        digits(d.getMonthValue(), 2);
+        buf[len++] = '-';
+        digits(d.getDayOfMonth(), 2);
+    }
+
+    private void digits(long v, int width) {
+        for (int i = len + width - 1; i >= len; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        len += width;
+    }
+
+    private void appendAmount(long cents) {
+        ensure(22);
+        len = Money.formatTo(cents, buf, len);
+    }
+
+    private void appendEscaped(String s) {
+        if (s == null) return;
+        ensure(s.length() * 2);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') buf[len++] = '"';
+            else if (c == ',') buf[len++] = '\\';
+            buf[len++] = c;
+        }
+    }
+
+    private void appendAscii(String s) {
+        ensure(s.length());
+        s.getChars(0, s.length(), buf, len);
+        len += s.length();
+    }
+
+    private void append(char c) {
+        ensure(1);
+        buf[len++] = c;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(len + extra, buf.length * 2));
+    }
+}
+
+/**
+ * Cursor-based parser for the ledger's CSV lines that reads UTF-8 bytes in place.
+ * Dates, amounts and types are decoded straight from the bytes; only the
+ * category and description become Strings, and categories are interned per
+ * parser so repeated names share one instance. Backslash escapes any byte and
+ * doubled quotes collapse to one, as written by {@link Transaction#toCSV()}.
+ * Instances keep scratch state and are not thread safe.
+ */
+class TransactionParser {
+    private static final Transaction.Type[] TYPES = Transaction.Type.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++) TYPE_NAMES[i] = TYPES[i].name().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private final int[] fieldStart = new int[5];
+    private final int[] fieldEnd = new int[5];
+    private final boolean[] fieldEscaped = new boolean[5];
+    private byte[] scratch = new byte[256];
+    private final AsciiView ascii = new AsciiView();
+
+    // Open-addressed intern table for category names, keyed by their encoded bytes
+    private byte[][] internKeys = new byte[64][];
+    private String[] internValues = new String[64];
+    private int internCount;
+
+    /** Parses the line in buf[start, end); returns null when it has fewer than five fields. */
+    Transaction parse(ByteBuffer buf, int start, int end) {
+        if (!scan(buf, start, end)) return null;
+        LocalDate date = parseDate(buf);
+        String category = intern(buf, fieldStart[1], fieldEnd[1], fieldEscaped[1]);
+        String desc = decode(buf, fieldStart[2], fieldEnd[2], fieldEscaped[2]);
+        long amount = parseAmount(buf);
+        Transaction.Type type = parseType(buf);
+        return new Transaction(date, category, desc, amount, type);
+    }
+
+    /** Parses the line in buf[start, end) into out; returns false when it has fewer than five fields. */
+    boolean parseInto(ByteBuffer buf, int start, int end, LedgerStore out) {
+        if (!scan(buf, start, end)) return false;
+        int day = Math.toIntExact(parseDate(buf).toEpochDay());
+        String category = intern(buf, fieldStart[1], fieldEnd[1], fieldEscaped[1]);
+        String desc = decode(buf, fieldStart[2], fieldEnd[2], fieldEscaped[2]);
+        long amount = parseAmount(buf);
+        Transaction.Type type = parseType(buf);
+        out.append(day, category, desc, amount, type);
+        return true;
+    }
+
+    // Locates the first five fields of the line; false when there are fewer
+    private boolean scan(ByteBuffer buf, int start, int end) {
+        if (end > start && buf.get(end - 1) == '\r') end--;
+        int field = 0;
+        int fs = start;
+        boolean escaped = false;
+        int i = start;
+        for (; i < end; i++) {
+            byte c = buf.get(i);
+            if (c == '\\') {
+                escaped = true;
+                i++;
+            } else if (c == '"') {
+                escaped = true;
+            } else if (c == ',') {
+                setField(field++, fs, i, escaped);
+                if (field == 5) break;
+                fs = i + 1;
+                escaped = false;
+            }
+        }
+        if (field < 5) {
+            setField(field++, fs, Math.min(i, end), escaped);
+            return field == 5;
+        }
+        return true;
+    }
+
+    private void setField(int field, int start, int end, boolean escaped) {
+        fieldStart[field] = start;
+        fieldEnd[field] = end;
+        fieldEscaped[field] = escaped;
+    }
+
+    private LocalDate parseDate(ByteBuffer buf) {
+        int s = fieldStart[0];
+        if (!fieldEscaped[0] && fieldEnd[0] - s == 10 && buf.get(s + 4) == '-' && buf.get(s + 7) == '-') {
+            int y = digits(buf, s, 4);
+            int m = digits(buf, s + 5, 2);
+            int d = digits(buf, s + 8, 2);
+            if (y > 0 && m >= 1 && m <= 12 && d >= 1 && d <= Month.of(m).length(Year.isLeap(y))) {
+                return LocalDate.of(y, m, d);
+            }
+        }
+        // Anything unusual goes through the formatter so leniency and errors match it
+        return LocalDate.parse(decode(buf, s, fieldEnd[0], fieldEscaped[0]), Transaction.fmt);
+    }
+
+    // Returns the decimal value of count ASCII digits at pos, or -1 if any byte is not a digit
+    private static int digits(ByteBuffer buf, int pos, int count) {
+        int v = 0;
+        for (int i = 0; i < count; i++) {
+            int c = buf.get(pos + i) - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+
+    private long parseAmount(ByteBuffer buf) {
+        if (fieldEscaped[3]) return Money.parse(decode(buf, fieldStart[3], fieldEnd[3], true));
+        return Money.parse(ascii.of(buf, fieldStart[3], fieldEnd[3]));
+    }
+
+    private Transaction.Type parseType(ByteBuffer buf) {
+        int s = fieldStart[4];
+        int len = fieldEnd[4] - s;
+        if (!fieldEscaped[4]) {
+            for (int t = 0; t < TYPES.length; t++) {
+                if (equalsBytes(buf, s, len, TYPE_NAMES[t])) return TYPES[t];
+            }
+        }
+        return Transaction.Type.valueOf(decode(buf, s, fieldEnd[4], fieldEscaped[4]));
+    }
+
+    private static boolean equalsBytes(ByteBuffer buf, int pos, int len, byte[] b) {
+        if (len != b.length) return false;
+        for (int i = 0; i < len; i++) {
+            if (buf.get(pos + i) != b[i]) return false;
+        }
+        return true;
+    }
+
+    // Copies buf[start, end) into scratch, resolving escapes when needed; returns the copied length
+    private int unescapeToScratch(ByteBuffer buf, int start, int end, boolean escaped) {
+        if (scratch.length < end - start) scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            byte c = buf.get(i);
+            if (escaped && c == '\\') {
+                if (++i == end) break;
+                c = buf.get(i);
+            }
+            scratch[n++] = c;
+        }
+        if (escaped) {
+            // Same order as the historical replace("\\,", ",").replace("\"\"", "\"") on the split field
+            n = collapsePairs(n, (byte) '\\', (byte) ',', (byte) ',');
+            n = collapsePairs(n, (byte) '"', (byte) '"', (byte) '"');
+        }
+        return n;
+    }
+
+    // Replaces each non-overlapping pair (a, b) in scratch[0, n) with r, scanning left to right
+    private int collapsePairs(int n, byte a, byte b, byte r) {
+        int out = 0;
+        for (int i = 0; i < n; i++) {
+            if (scratch[i] == a && i + 1 < n && scratch[i + 1] == b) {
+                scratch[out++] = r;
+                i++;
+            } else {
+                scratch[out++] = scratch[i];
+            }
+        }
+        return out;
+    }
+
+    private String decode(ByteBuffer buf, int start, int end, boolean escaped) {
+        if (!escaped && buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        int n = unescapeToScratch(buf, start, end, escaped);
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private String intern(ByteBuffer buf, int start, int end, boolean escaped) {
+        int n = unescapeToScratch(buf, start, end, escaped);
+        int h = 1;
+        for (int i = 0; i < n; i++) h = 31 * h + scratch[i];
+        int mask = internKeys.length - 1;
+        int slot = h & mask;
+        while (internKeys[slot] != null) {
+            if (Arrays.equals(internKeys[slot], 0, internKeys[slot].length, scratch, 0, n)) return internValues[slot];
+            slot = (slot + 1) & mask;
+        }
+        String value = new String(scratch, 0, n, StandardCharsets.UTF_8);
+        internKeys[slot] = Arrays.copyOf(scratch, n);
+        internValues[slot] = value;
+        if (++internCount * 2 > internKeys.length) growInternTable();
+        return value;
+    }
+
+    private void growInternTable() {
+        byte[][] oldKeys = internKeys;
+        String[] oldValues = internValues;
+        internKeys = new byte[oldKeys.length * 2][];
+        internValues = new String[oldKeys.length * 2];
+        int mask = internKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key == null) continue;
+            int h = 1;
+            for (byte b : key) h = 31 * h + b;
+            int slot = h & mask;
+            while (internKeys[slot] != null) slot = (slot + 1) & mask;
+            internKeys[slot] = key;
+            internValues[slot] = oldValues[i];
+        }
+    }
+
+    // Reusable CharSequence over a byte range; non-ASCII bytes never form a valid number anyway
+    private static final class AsciiView implements CharSequence {
+        private ByteBuffer buf;
+        private int start;
+        private int end;
+
+        AsciiView of(ByteBuffer buf, int start, int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() { return end - start; }
+
+        @Override
+        public char charAt(int index) { return (char) (buf.get(start + index) & 0xff); }
+
+        @Override
+        public CharSequence subSequence(int from, int to) { return toString().substring(from, to); }
+
+        @Override
+        public String toString() {
+            byte[] b = new byte[end - start];
+            buf.get(start, b);
+            return new String(b, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
+
+/**
+ * Row storage behind TransactionManager. Rows are addressed by position; adds
+ * append and removes shift later rows down, matching the journal's semantics.
+ * Pick the implementation with -Dtracker.store=list|columnar.
+ */
+interface LedgerStore {
+    /** A store that codes categories through categories, e.g. the dictionary of the manager that owns it. */
+    static LedgerStore create(CategoryDictionary categories) {
+        return "columnar".equals(System.getProperty("tracker.store"))
+                ? new ColumnarLedgerStore(categories) : new ListLedgerStore(categories);
+    }
+
+    int size();
+    int epochDay(int row);
+    long amount(int row);
+    Transaction.Type type(int row);
+    String category(int row);
+    String description(int row);
+
+    /** The id of the row's category in {@link #categories()}. */
+    int categoryId(int row);
+
+    /** The dictionary behind {@link #categoryId}; copies and new empty stores get their own. */
+    CategoryDictionary categories();
+
+    void append(int epochDay, String category, String description, long amount, Transaction.Type type);
+    void remove(int row);
+    void clear();
+
+    /** Appends every row of other, in order. */
+    void addAll(LedgerStore other);
+
+    /** Returns an independent copy, e.g. for writing out on another thread. */
+    LedgerStore copy();
+
+    /** Returns an empty store of the same kind. */
+    LedgerStore newEmpty();
+
+    default void add(Transaction t) {
+        append(Math.toIntExact(t.date.toEpochDay()), t.category, t.description, t.amount, t.type);
+    }
+
+    default Transaction get(int row) {
+        return new Transaction(LocalDate.ofEpochDay(epochDay(row)), category(row), description(row), amount(row), type(row));
+    }
+}
+
+/** The original layout: one Transaction object per row. */
+class ListLedgerStore implements LedgerStore {
+    private final List<Transaction> rows;
+    private final CategoryDictionary categories;
+
+    ListLedgerStore() { this(new CategoryDictionary()); }
+
+    ListLedgerStore(CategoryDictionary categories) { this(new ArrayList<>(), categories); }
+
+    private ListLedgerStore(List<Transaction> rows, CategoryDictionary categories) {
+        this.rows = rows;
+        this.categories = categories;
+    }
+
+    @Override public int size() { return rows.size(); }
+    @Override public int epochDay(int row) { return Math.toIntExact(rows.get(row).date.toEpochDay()); }
+    @Override public long amount(int row) { return rows.get(row).amount; }
+    @Override public Transaction.Type type(int row) { return rows.get(row).type; }
+    @Override public String category(int row) { return rows.get(row).category; }
+    @Override public String description(int row) { return rows.get(row).description; }
+    @Override public int categoryId(int row) { return categories.id(rows.get(row).category); }
+    @Override public CategoryDictionary categories() { return categories; }
+    @Override public Transaction get(int row) { return rows.get(row); }
+    @Override public void add(Transaction t) { rows.add(t); }
+
+    @Override
+    public void append(int epochDay, String category, String description, long amount, Transaction.Type type) {
+        rows.add(new Transaction(LocalDate.ofEpochDay(epochDay), category, description, amount, type));
+    }
+
+    @Override public void remove(int row) { rows.remove(row); }
+
+    @Override
+    public void clear() {
+        rows.clear();
+        categories.clear();
+    }
+
+    @Override
+    public void addAll(LedgerStore other) {
+        if (other instanceof ListLedgerStore) {
+            rows.addAll(((ListLedgerStore) other).rows);
+        } else {
+            for (int i = 0, n = other.size(); i < n; i++) rows.add(other.get(i));
+        }
+    }
+
+    @Override public LedgerStore copy() { return new ListLedgerStore(new ArrayList<>(rows), new CategoryDictionary()); }
+    @Override public LedgerStore newEmpty() { return new ListLedgerStore(); }
+}
+
+/**
+ * Struct-of-arrays storage: about 25 bytes per row plus the UTF-8 description
+ * bytes, against 150+ for a Transaction with its LocalDate and Strings.
+ * Categories are coded by a {@link CategoryDictionary}, the manager's own for
+ * its store, so the codes are the ids the manager aggregates and filters by.
+ * Descriptions live in one byte pool that is compacted once removed rows
+ * leave more than half of it unused.
+ */
+class ColumnarLedgerStore implements LedgerStore {
+    private static final Transaction.Type[] TYPES = Transaction.Type.values();
+
+    private int size;
+    private int[] days = new int[16];
+    private long[] amounts = new long[16];
+    private byte[] types = new byte[16];
+    private int[] categories = new int[16];
+    private int[] descStart = new int[16];
+    private int[] descLength = new int[16];
+    private byte[] descPool = new byte[1024];
+    private int descPoolUsed;
+    private int descPoolGarbage;
+    private final CategoryDictionary categoryNames;
+
+    ColumnarLedgerStore() { this(new CategoryDictionary()); }
+
+    ColumnarLedgerStore(CategoryDictionary categories) { this.categoryNames = categories; }
+
+    @Override public int size() { return size; }
+    @Override public int epochDay(int row) { return days[check(row)]; }
+    @Override public long amount(int row) { return amounts[check(row)]; }
+    @Override public Transaction.Type type(int row) { return TYPES[types[check(row)]]; }
+    @Override public String category(int row) { return categoryNames.name(categories[check(row)]); }
+    @Override public int categoryId(int row) { return categories[check(row)]; }
+    @Override public CategoryDictionary categories() { return categoryNames; }
+
+    @Override
+    public String description(int row) {
+        check(row);
+        return new String(descPool, descStart[row], descLength[row], StandardCharsets.UTF_8);
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        return row;
+    }
+
+    @Override
+    public void append(int epochDay, String category, String description, long amount, Transaction.Type type) {
+        byte[] desc = description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+        ensureRows(size + 1);
+        ensurePool(desc.length);
+        days[size] = epochDay;
+        amounts[size] = amount;
+        types[size] = (byte) type.ordinal();
+        categories[size] = categoryNames.id(category);
+        descStart[size] = descPoolUsed;
+        descLength[size] = desc.length;
+        System.arraycopy(desc, 0, descPool, descPoolUsed, desc.length);
+        descPoolUsed += desc.length;
+        size++;
+    }
+
+    @Override
+    public void remove(int row) {
+        check(row);
+        descPoolGarbage += descLength[row];
+        int tail = size - row - 1;
+        System.arraycopy(days, row + 1, days, row, tail);
+        System.arraycopy(amounts, row + 1, amounts, row, tail);
+        System.arraycopy(types, row + 1, types, row, tail);
+        System.arraycopy(categories, row + 1, categories, row, tail);
+        System.arraycopy(descStart, row + 1, descStart, row, tail);
+        System.arraycopy(descLength, row + 1, descLength, row, tail);
+        size--;
+        if (descPoolGarbage > 4096 && descPoolGarbage > descPoolUsed / 2) compactPool();
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        descPoolUsed = 0;
+        descPoolGarbage = 0;
+        categoryNames.clear();
+    }
+
+    @Override
+    public void addAll(LedgerStore other) {
+        if (!(other instanceof ColumnarLedgerStore)) {
+            for (int i = 0, n = other.size(); i < n; i++) {
+                append(other.epochDay(i), other.category(i), other.description(i), other.amount(i), other.type(i));
+            }
+            return;
+        }
+        ColumnarLedgerStore o = (ColumnarLedgerStore) other;
+        int[] remap = new int[o.categoryNames.size()];
+        for (int c = 0; c < remap.length; c++) remap[c] = categoryNames.id(o.categoryNames.name(c));
+        ensureRows(size + o.size);
+        ensurePool(o.descPoolUsed);
+        System.arraycopy(o.days, 0, days, size, o.size);
+        System.arraycopy(o.amounts, 0, amounts, size, o.size);
+        System.arraycopy(o.types, 0, types, size, o.size);
+        System.arraycopy(o.descPool, 0, descPool, descPoolUsed, o.descPoolUsed);
+        for (int i = 0; i < o.size; i++) {
+            categories[size + i] = remap[o.categories[i]];
+            descStart[size + i] = o.descStart[i] + descPoolUsed;
+            descLength[size + i] = o.descLength[i];
+        }
+        size += o.size;
+        descPoolUsed += o.descPoolUsed;
+        descPoolGarbage += o.descPoolGarbage;
+    }
+
+    @Override
+    public LedgerStore copy() {
+        ColumnarLedgerStore c = new ColumnarLedgerStore();
+        c.addAll(this);
+        return c;
+    }
+
+    @Override public LedgerStore newEmpty() { return new ColumnarLedgerStore(); }
+
+    private void ensureRows(int rows) {
+        if (rows <= days.length) return;
+        int cap = Math.max(rows, days.length + (days.length >> 1));
+        days = Arrays.copyOf(days, cap);
+        amounts = Arrays.copyOf(amounts, cap);
+        types = Arrays.copyOf(types, cap);
+        categories = Arrays.copyOf(categories, cap);
+        descStart = Arrays.copyOf(descStart, cap);
+        descLength = Arrays.copyOf(descLength, cap);
+    }
+
+    private void ensurePool(int extra) {
+        if (descPoolUsed + extra <= descPool.length) return;
+        descPool = Arrays.copyOf(descPool, Math.max(descPoolUsed + extra, descPool.length + (descPool.length >> 1)));
+    }
+
+    // Rewrites the pool in row order, dropping bytes of removed rows
+    private void compactPool() {
+        byte[] pool = new byte[Math.max(1024, descPoolUsed - descPoolGarbage)];
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(descPool, descStart[i], pool, used, descLength[i]);
+            descStart[i] = used;
+            used += descLength[i];
+        }
+        descPool = pool;
+        descPoolUsed = used;
+        descPoolGarbage = 0;
+    }
+}
+
+/**
+ * Reusable read cursor over one row of a {@link LedgerStore}, so views can walk
+ * the ledger without materializing a Transaction per row.
+ */
+final class LedgerRow {
+    private final LedgerStore store;
+    private int row;
+
+    LedgerRow(LedgerStore store) { this.store = store; }
+
+    LedgerRow at(int row) {
+        this.row = row;
+        return this;
+    }
+
+    LocalDate date() { return LocalDate.ofEpochDay(store.epochDay(row)); }
+    String category() { return store.category(row); }
+    String description() { return store.description(row); }
+    long amount() { return store.amount(row); }
+    Transaction.Type type() { return store.type(row); }
+}
+
+/**
+ * Dense int ids for category names, with a live row count per category and a
+ * sorted list of the names currently in use. The manager updates it on every
+ * add and remove so views never have to rescan the ledger for categories.
+ */
+class CategoryDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int[] counts = new int[16];
+    // Names with a non-zero count, in natural order
+    private final List<String> sorted = new ArrayList<>();
+    private int version;
+
+    /** Returns the id of name, assigning the next free one if it is new. */
+    int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+            if (id == counts.length) counts = Arrays.copyOf(counts, id * 2);
+        }
+        return id;
+    }
+
+    /** Returns the id of name, or -1 if it was never seen. */
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    String name(int id) { return names.get(id); }
+
+    /** Number of ids handed out so far, including categories no longer in use. */
+    int size() { return names.size(); }
+
+    int count(int id) { return counts[id]; }
+
+    List<String> sortedNames() { return Collections.unmodifiableList(sorted); }
+
+    /** Changes whenever {@link #sortedNames()} does. */
+    int version() { return version; }
+
+    void increment(int id) {
+        if (counts[id]++ == 0) {
+            String name = names.get(id);
+            sorted.add(-Collections.binarySearch(sorted, name) - 1, name);
+            version++;
+        }
+    }
+
+    void decrement(int id) {
+        if (counts[id] > 0 && --counts[id] == 0) {
+            sorted.remove(Collections.binarySearch(sorted, names.get(id)));
+            version++;
+        }
+    }
+
+    void clear() {
+        ids.clear();
+        names.clear();
+        Arrays.fill(counts, 0);
+        sorted.clear();
+        version++;
+    }
+}
+
+/**
+ * Ledger rows ordered by date. Each entry packs (epochDay << 32 | row) into one
+ * long, so the index is a single sorted primitive array: range lookups are a
+ * binary search plus a slice, and backdated inserts are an arraycopy. Removing
+ * a row renumbers the rows after it, which is one linear pass over the keys.
+ */
+class DateIndex {
+    private long[] keys = new long[16];
+    private int size;
+
+    private static long key(int epochDay, int row) {
+        return ((long) epochDay << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    void rebuild(LedgerStore store) {
+        size = store.size();
+        if (keys.length < size) keys = new long[size];
+        for (int i = 0; i < size; i++) keys[i] = key(store.epochDay(i), i);
+        Arrays.parallelSort(keys, 0, size);
+    }
+
+    void insert(int epochDay, int row) {
+        long k = key(epochDay, row);
+        int pos = Arrays.binarySearch(keys, 0, size, k);
+        if (pos >= 0) return;
+        pos = -pos - 1;
+        if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        keys[pos] = k;
+        size++;
+    }
+
+    void remove(int epochDay, int row) {
+        int pos = Arrays.binarySearch(keys, 0, size, key(epochDay, row));
+        if (pos < 0) return;
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        size--;
+        // Rows after the removed one moved down by one; the day bits are untouched
+        for (int i = 0; i < size; i++) {
+            if ((int) keys[i] > row) keys[i]--;
+        }
+    }
+
+    /** Rows dated fromDay..toDay inclusive, in date order. */
+    int[] rows(int fromDay, int toDay) {
+        int lo = lowerBound(key(fromDay, 0));
+        int hi = toDay == Integer.MAX_VALUE ? size : lowerBound(key(toDay + 1, 0));
+        int[] out = new int[Math.max(0, hi - lo)];
+        for (int i = lo; i < hi; i++) out[i - lo] = (int) keys[i];
+        return out;
+    }
+
+    private int lowerBound(long k) {
+        int pos = Arrays.binarySearch(keys, 0, size, k);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
+
+/**
+ * Sum and row count per (category id, month, type), updated in O(1) per edit.
+ * Every edit is also booked under a catch-all category so whole-ledger
+ * questions cost one lookup per month rather than one per category.
+ */
+class RollupCube {
+    static final int ALL_CATEGORIES = -1;
+
+    /** A month's total next to the month before it. */
+    static final class MonthOverMonth {
+        final long current;
+        final long previous;
+
+        MonthOverMonth(long current, long previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+
+        long change() { return current - previous; }
+    }
+
+    // Cell key -> {sum, count}
+    private final Map<Long, long[]> cells = new HashMap<>();
+
+    private static int monthIndex(YearMonth m) {
+        return m.getYear() * 12 + m.getMonthValue() - 1;
+    }
+
+    private static long key(int category, int month, Transaction.Type type) {
+        return ((long) category << 32) | ((month << 1 | type.ordinal()) & 0xFFFFFFFFL);
+    }
+
+    /** Books a row in (sign 1) or out (sign -1) of its cells. */
+    void update(int category, int epochDay, Transaction.Type type, long amount, int sign) {
+        int month = monthIndex(YearMonth.from(LocalDate.ofEpochDay(epochDay)));
+        bump(key(category, month, type), amount * sign, sign);
+        bump(key(ALL_CATEGORIES, month, type), amount * sign, sign);
+    }
+
+    private void bump(long key, long amount, int count) {
+        long[] cell = cells.computeIfAbsent(key, k -> new long[2]);
+        cell[0] += amount;
+        cell[1] += count;
+        if (cell[1] == 0) cells.remove(key);
+    }
+
+    void clear() {
+        cells.clear();
+    }
+
+    long sum(int category, YearMonth month, Transaction.Type type) {
+        long[] cell = cells.get(key(category, monthIndex(month), type));
+        return cell == null ? 0 : cell[0];
+    }
+
+    long count(int category, YearMonth month, Transaction.Type type) {
+        long[] cell = cells.get(key(category, monthIndex(month), type));
+        return cell == null ? 0 : cell[1];
+    }
+
+    /** Sum over the months from..to inclusive. */
+    long total(int category, YearMonth from, YearMonth to, Transaction.Type type) {
+        long total = 0;
+        for (int m = monthIndex(from), end = monthIndex(to); m <= end; m++) {
+            long[] cell = cells.get(key(category, m, type));
+            if (cell != null) total += cell[0];
+        }
+        return total;
+    }
+
+    MonthOverMonth monthOverMonth(int category, YearMonth month, Transaction.Type type) {
+        return new MonthOverMonth(sum(category, month, type), sum(category, month.minusMonths(1), type));
+    }
+}
+
+/**
+ * Net amount per day (income positive, expense negative) over a contiguous
+ * range of epoch days, with a Fenwick tree on top so the balance as of any day
+ * is a prefix sum in O(log days). The range grows by doubling when a row falls
+ * outside it, rebuilding the tree from the daily array in linear time.
+ * Expense per day is kept alongside for the timeline chart. Days before
+ * Transaction.MIN_DATE or after MAX_DATE are booked on the day just outside
+ * that range, so a typo such as year 9999 cannot size the arrays; balances
+ * within the range stay exact.
+ */
+class BalanceIndex {
+    private int origin;
+    private long[] daily = new long[0];
+    // Expense booked per day, over the same range as daily
+    private long[] spent = new long[0];
+    // 1-based Fenwick tree over daily
+    private long[] tree = new long[1];
+
+    /** Books delta to the balance and expense to the spend of epochDay. */
+    void add(int epochDay, long delta, long expense) {
+        epochDay = bucket(epochDay);
+        cover(epochDay);
+        daily[epochDay - origin] += delta;
+        spent[epochDay - origin] += expense;
+        for (int i = epochDay - origin + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    void clear() {
+        daily = new long[0];
+        spent = new long[0];
+        tree = new long[1];
+    }
+
+    void rebuild(LedgerStore store) {
+        clear();
+        int n = store.size();
+        if (n == 0) return;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int d = bucket(store.epochDay(i));
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+        }
+        origin = min;
+        daily = new long[max - min + 1];
+        spent = new long[daily.length];
+        for (int i = 0; i < n; i++) {
+            long a = store.amount(i);
+            int d = bucket(store.epochDay(i)) - origin;
+            if (store.type(i) == Transaction.Type.INCOME) {
+                daily[d] += a;
+            } else {
+                daily[d] -= a;
+                spent[d] += a;
+            }
+        }
+        buildTree();
+    }
+
+    /** Balance after every row dated on or before epochDay. */
+    long balanceAsOf(int epochDay) {
+        long i = Math.min((long) bucket(epochDay) - origin + 1, daily.length);
+        long sum = 0;
+        for (int k = (int) i; k > 0; k -= k & -k) sum += tree[k];
+        return sum;
+    }
+
+    /** Balances as of fromDay, fromDay + step, ... up to toDay inclusive. */
+    long[] curve(int fromDay, int toDay, int step) {
+        if (toDay < fromDay || step <= 0) return new long[0];
+        long[] out = new long[(int) (((long) toDay - fromDay) / step + 1)];
+        for (int i = 0; i < out.length; i++) out[i] = balanceAsOf(fromDay + i * step);
+        return out;
+    }
+
+    /** Copies the days from the first to the last with any booking; O(days), not O(rows). */
+    DailySeries series() {
+        int first = 0, last = daily.length - 1;
+        while (first <= last && daily[first] == 0 && spent[first] == 0) first++;
+        while (last >= first && daily[last] == 0 && spent[last] == 0) last--;
+        return new DailySeries(origin + first,
+                Arrays.copyOfRange(daily, first, last + 1), Arrays.copyOfRange(spent, first, last + 1));
+    }
+
+    private static int bucket(int epochDay) {
+        return Math.max(Transaction.MIN_DAY - 1, Math.min(Transaction.MAX_DAY + 1, epochDay));
+    }
+
+    private void cover(int day) {
+        if (daily.length == 0) {
+            origin = day;
+            daily = new long[1];
+            spent = new long[1];
+            tree = new long[2];
+            return;
+        }
+        if (day >= origin && day - origin < daily.length) return;
+        int newOrigin = origin;
+        int newLength = daily.length;
+        while (day < newOrigin) {
+            newOrigin -= newLength;
+            newLength *= 2;
+        }
+        while (day - newOrigin >= newLength) newLength *= 2;
+        long[] grown = new long[newLength];
+        System.arraycopy(daily, 0, grown, origin - newOrigin, daily.length);
+        long[] grownSpent = new long[newLength];
+        System.arraycopy(spent, 0, grownSpent, origin - newOrigin, spent.length);
+        origin = newOrigin;
+        daily = grown;
+        spent = grownSpent;
+        buildTree();
+    }
+
+    // Linear-time Fenwick construction: push each node's total up to its parent
+    private void buildTree() {
+        tree = new long[daily.length + 1];
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += daily[i - 1];
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+    }
+}
+
+/**
+ * Snapshot of the ledger per day from its first to its last booked day: the
+ * net amount and the expense of each. Immutable, so a chart can work on it
+ * off the EDT while the ledger moves on.
+ */
+class DailySeries {
+    final int firstDay;
+    final long[] net;
+    final long[] spent;
+
+    DailySeries(int firstDay, long[] net, long[] spent) {
+        this.firstDay = firstDay;
+        this.net = net;
+        this.spent = spent;
+    }
+
+    int days() { return net.length; }
+
+    /** Balance at the end of each day. */
+    long[] balances() {
+        long[] out = new long[net.length];
+        long sum = 0;
+        for (int i = 0; i < out.length; i++) out[i] = sum += net[i];
+        return out;
+    }
+
+    /**
+     * Indexes of at most points values of y picked by Largest-Triangle-Three-Buckets:
+     * the first and last, plus from each bucket between them the value forming
+     * the largest triangle with the previous pick and the next bucket's average.
+     * Peaks and troughs survive, unlike with plain sampling, in O(y.length).
+     */
+    static int[] lttb(long[] y, int points) {
+        int n = y.length;
+        if (points >= n || points < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        int[] picked = new int[points];
+        double every = (double) (n - 2) / (points - 2);
+        int a = 0;
+        for (int b = 0; b < points - 2; b++) {
+            int avgFrom = (int) ((b + 1) * every) + 1;
+            int avgTo = Math.min((int) ((b + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            for (int j = avgFrom; j < avgTo; j++) {
+                avgX += j;
+                avgY += y[j];
+            }
+            avgX /= avgTo - avgFrom;
+            avgY /= avgTo - avgFrom;
+            double best = -1;
+            int next = a + 1;
+            for (int j = (int) (b * every) + 1, to = (int) ((b + 1) * every) + 1; j < to; j++) {
+                double area = Math.abs((a - avgX) * ((double) y[j] - y[a]) - (a - j) * (avgY - y[a]));
+                if (area > best) {
+                    best = area;
+                    next = j;
+                }
+            }
+            picked[b + 1] = a = next;
+        }
+        picked[points - 1] = n - 1;
+        return picked;
+    }
+
+    /** The largest value of y in each of columns equal runs; y itself when it is no longer. */
+    static long[] columnMax(long[] y, int columns) {
+        if (y.length <= columns) return y;
+        long[] out = new long[columns];
+        for (int c = 0; c < columns; c++) {
+            long max = Long.MIN_VALUE;
+            for (int i = (int) ((long) c * y.length / columns), to = (int) ((long) (c + 1) * y.length / columns); i < to; i++) {
+                max = Math.max(max, y[i]);
+            }
+            out[c] = max;
+        }
+        return out;
+    }
+}
+
+/**
+ * A set of ledger rows as a plain bitset, one bit per row. Bitmaps stay
+ * uncompressed: at a million rows one costs 122KB and ANDs in microseconds.
+ */
+class RowBitmap {
+    private long[] words = new long[4];
+
+    void set(int row) {
+        int w = row >>> 6;
+        if (w >= words.length) words = Arrays.copyOf(words, Math.max(w + 1, words.length * 2));
+        words[w] |= 1L << row;
+    }
+
+    boolean get(int row) {
+        int w = row >>> 6;
+        return w < words.length && (words[w] & (1L << row)) != 0;
+    }
+
+    /** Drops row and moves every higher row down one, as a ledger remove does. */
+    void removeShift(int row) {
+        int w = row >>> 6;
+        if (w >= words.length) return;
+        long below = words[w] & ((1L << row) - 1);
+        words[w] = below | ((words[w] >>> 1) & (-1L << row));
+        for (int i = w; i < words.length; i++) {
+            if (i > w) words[i] >>>= 1;
+            if (i + 1 < words.length) words[i] |= words[i + 1] << 63;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    RowBitmap copy() {
+        RowBitmap b = new RowBitmap();
+        b.words = words.clone();
+        return b;
+    }
+
+    /** Keeps only the rows also in other. */
+    RowBitmap and(RowBitmap other) {
+        int n = Math.min(words.length, other.words.length);
+        for (int i = 0; i < n; i++) words[i] &= other.words[i];
+        Arrays.fill(words, n, words.length, 0);
+        return this;
+    }
+
+    int cardinality() {
+        int c = 0;
+        for (long w : words) c += Long.bitCount(w);
+        return c;
+    }
+
+    /** Position of the n-th (from 0) bit that is not set. */
+    int nthClear(int n) {
+        for (int i = 0; ; i++) {
+            long w = i < words.length ? words[i] : 0;
+            int free = 64 - Long.bitCount(w);
+            if (n < free) {
+                for (long clear = ~w; ; clear &= clear - 1) {
+                    if (n-- == 0) return (i << 6) + Long.numberOfTrailingZeros(clear);
+                }
+            }
+            n -= free;
+        }
+    }
+
+    /**
+     * Drops the positions set in removed and closes the gaps they leave, as if
+     * each were a ledger remove. Whole words move at once where removed is clear.
+     */
+    RowBitmap collapse(RowBitmap removed) {
+        RowBitmap out = new RowBitmap();
+        out.words = new long[words.length];
+        int pos = 0;
+        for (int i = 0; i < words.length; i++) {
+            long gaps = i < removed.words.length ? removed.words[i] : 0;
+            long bits = words[i];
+            int count = 64;
+            if (gaps != 0) {
+                long packed = 0;
+                count = 0;
+                for (int b = 0; b < 64; b++) {
+                    if ((gaps & (1L << b)) != 0) continue;
+                    if ((bits & (1L << b)) != 0) packed |= 1L << count;
+                    count++;
+                }
+                bits = packed;
+            }
+            if (bits != 0) {
+                int w = pos >>> 6, shift = pos & 63;
+                out.words[w] |= bits << shift;
+                if (shift != 0 && w + 1 < out.words.length) out.words[w + 1] |= bits >>> (64 - shift);
+            }
+            pos += count;
+        }
+        return out;
+    }
+
+    /** The rows in ascending order. */
+    int[] toRows() {
+        int[] rows = new int[cardinality()];
+        int k = 0;
+        for (int i = 0; i < words.length; i++) {
+            for (long w = words[i]; w != 0; w &= w - 1) rows[k++] = (i << 6) + Long.numberOfTrailingZeros(w);
+        }
+        return rows;
+    }
+}
+
+/**
+ * Ascending set of ledger rows, held as a sorted int[] while that is smaller
+ * than a bitmap reaching its last row and as a {@link RowBitmap} once dense.
+ * A small category then costs a few ints rather than rows/8 bytes, and a
+ * removeShift touches its own rows rather than every word up to the end.
+ */
+class RowSet {
+    // Below this many rows the sorted array is always small enough
+    private static final int MIN_DENSE = 64;
+
+    private int[] rows = new int[4];
+    // Non-null while dense, and rows is then null
+    private RowBitmap bits;
+    private int size;
+    // The highest row in the set; an upper bound while dense
+    private int last = -1;
+
+    int size() { return size; }
+
+    void add(int row) {
+        if (bits != null) {
+            if (bits.get(row)) return;
+            bits.set(row);
+        } else {
+            // Rows are nearly always appended, past every row already here
+            int p = row > last ? size : Arrays.binarySearch(rows, 0, size, row);
+            if (p >= 0 && p < size) return;
+            if (p < 0) p = -p - 1;
+            if (size == rows.length) rows = Arrays.copyOf(rows, Math.max(4, size * 2));
+            System.arraycopy(rows, p, rows, p + 1, size - p);
+            rows[p] = row;
+        }
+        size++;
+        last = Math.max(last, row);
+        adapt();
+    }
+
+    /** Drops row and moves every higher row down one, as a ledger remove does. */
+    void removeShift(int row) {
+        if (row > last) return;
+        if (bits != null) {
+            if (bits.get(row)) size--;
+            bits.removeShift(row);
+            last--;
+        } else {
+            int p = Arrays.binarySearch(rows, 0, size, row);
+            int gap = p >= 0 ? 1 : 0;
+            for (int i = p >= 0 ? p + 1 : -p - 1; i < size; i++) rows[i - gap] = rows[i] - 1;
+            size -= gap;
+            last = size > 0 ? rows[size - 1] : -1;
+        }
+        adapt();
+    }
+
+    /** The rows as a new bitmap the caller may modify. */
+    RowBitmap toBitmap() {
+        if (bits != null) return bits.copy();
+        RowBitmap b = new RowBitmap();
+        for (int i = 0; i < size; i++) b.set(rows[i]);
+        return b;
+    }
+
+    // Switches form when the other is clearly smaller; the gap between the thresholds stops flapping
+    private void adapt() {
+        long span = last + 1L;
+        if (bits == null && size >= MIN_DENSE && size * 32L > span) {
+            bits = toBitmap();
+            rows = null;
+        } else if (bits != null && size * 64L < span) {
+            rows = bits.toRows();
+            bits = null;
+            last = size > 0 ? rows[size - 1] : -1;
+        }
+    }
+}
+
+/**
+ * Insertion ids for an index whose postings must outlive ledger removes, which
+ * renumber every later row. A remove only marks its id deleted; rows are the
+ * live ids counted in order, and once deletions pile up {@link #compact} hands
+ * the owner a dense renumbering to rewrite its postings with.
+ */
+class RowIds {
+    private RowBitmap deleted = new RowBitmap();
+    private int deletedCount;
+    private int next;
+
+    /** The id of a row appended after every row so far. */
+    int add() {
+        return next++;
+    }
+
+    /** Ids handed out since the last compact or clear, live or not. */
+    int size() {
+        return next;
+    }
+
+    /** Marks row's id deleted; true once enough are deleted that the owner should compact. */
+    boolean remove(int row) {
+        deleted.set(deleted.nthClear(row));
+        return ++deletedCount > Math.max(1024, next / 8);
+    }
+
+    boolean isDeleted(int id) {
+        return deletedCount > 0 && deleted.get(id);
+    }
+
+    /** The rows of a bitmap of ids. */
+    RowBitmap rows(RowBitmap ids) {
+        return deletedCount == 0 ? ids : ids.collapse(deleted);
+    }
+
+    /**
+     * Numbers the live ids densely, which makes them rows again; returns each
+     * old id's new one, or -1 for deleted ids.
+     */
+    int[] compact() {
+        int[] newId = new int[next];
+        int live = 0;
+        for (int id = 0; id < next; id++) newId[id] = deleted.get(id) ? -1 : live++;
+        clear();
+        next = live;
+        return newId;
+    }
+
+    void clear() {
+        deleted = new RowBitmap();
+        deletedCount = 0;
+        next = 0;
+    }
+}
+
+/**
+ * Inverted index from the words of each row's description and category to
+ * the rows holding them. Words are lower-cased runs of letters and digits.
+ * A TreeMap over the words makes every word starting with a prefix one
+ * contiguous key range, which keeps type-ahead search cheap, and one-letter
+ * prefixes, the widest, come from a bitmap per initial.
+ * <p>
+ * Postings hold {@link RowIds} insertion ids rather than rows, so a remove
+ * does not renumber every list; a search squeezes the deleted ids out to get
+ * rows, and the lists are compacted once deletions pile up.
+ */
+class TextIndex {
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+    }
+
+    // Open-addressed word table probed straight from the scan buffer, so indexing
+    // a row allocates a String only for words never seen before
+    private String[] slotWords = new String[1024];
+    private int[] slotHashes = new int[1024];
+    private Postings[] slotPostings = new Postings[1024];
+    private int wordCount;
+    private final TreeMap<String, Postings> sorted = new TreeMap<>();
+    private char[] scan = new char[64];
+    private final Map<Character, RowBitmap> initials = new HashMap<>();
+    private final RowIds rowIds = new RowIds();
+
+    static List<String> tokenize(String s) {
+        List<String> out = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0, n = s.length(); i <= n; i++) {
+            char c = i < n ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                out.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return out;
+    }
+
+    /** Indexes the next row, which must come after every row indexed so far. */
+    void add(String description, String category) {
+        int id = rowIds.add();
+        addWords(description, id);
+        addWords(category, id);
+    }
+
+    // The tokenize loop again, hashing into scan instead of building Strings
+    private void addWords(String s, int id) {
+        int len = 0, hash = 0;
+        for (int i = 0, n = s.length(); i <= n; i++) {
+            char c = i < n ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (len == scan.length) scan = Arrays.copyOf(scan, len * 2);
+                c = Character.toLowerCase(c);
+                scan[len++] = c;
+                hash = 31 * hash + c;
+            } else if (len > 0) {
+                append(postings(len, hash), id, scan[0]);
+                len = 0;
+                hash = 0;
+            }
+        }
+    }
+
+    // Finds or creates the postings of the word in scan[0, len), whose String hash is hash
+    private Postings postings(int len, int hash) {
+        int mask = slotWords.length - 1;
+        for (int i = (hash ^ (hash >>> 16)) & mask; ; i = (i + 1) & mask) {
+            String w = slotWords[i];
+            if (w == null) {
+                String word = new String(scan, 0, len);
+                Postings p = new Postings();
+                slotWords[i] = word;
+                slotHashes[i] = hash;
+                slotPostings[i] = p;
+                sorted.put(word, p);
+                if (++wordCount * 2 > slotWords.length) rehash(slotWords.length * 2);
+                return p;
+            }
+            if (slotHashes[i] == hash && w.length() == len && sameChars(w, len)) return slotPostings[i];
+        }
+    }
+
+    private boolean sameChars(String w, int len) {
+        for (int k = 0; k < len; k++) {
+            if (w.charAt(k) != scan[k]) return false;
+        }
+        return true;
+    }
+
+    // Refills the word table from sorted, which holds exactly the live words
+    private void rehash(int capacity) {
+        slotWords = new String[capacity];
+        slotHashes = new int[capacity];
+        slotPostings = new Postings[capacity];
+        wordCount = sorted.size();
+        int mask = capacity - 1;
+        for (Map.Entry<String, Postings> e : sorted.entrySet()) {
+            int h = e.getKey().hashCode();
+            int i = (h ^ (h >>> 16)) & mask;
+            while (slotWords[i] != null) i = (i + 1) & mask;
+            slotWords[i] = e.getKey();
+            slotHashes[i] = h;
+            slotPostings[i] = e.getValue();
+        }
+    }
+
+    /** Drops row; the rows after it move up one, as in the ledger. */
+    void remove(int row) {
+        if (rowIds.remove(row)) compact();
+    }
+
+    void clear() {
+        sorted.clear();
+        rehash(1024);
+        initials.clear();
+        rowIds.clear();
+    }
+
+    /**
+     * Rows where every word of query starts some word of the row; null when the
+     * query has no words at all.
+     */
+    RowBitmap search(String query) {
+        RowBitmap hits = null;
+        for (String term : tokenize(query)) {
+            RowBitmap any;
+            if (term.length() == 1) {
+                RowBitmap b = initials.get(term.charAt(0));
+                any = b == null ? new RowBitmap() : b.copy();
+            } else {
+                any = new RowBitmap();
+                for (Postings p : sorted.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                    for (int i = 0; i < p.size; i++) any.set(p.ids[i]);
+                }
+            }
+            hits = hits == null ? any : hits.and(any);
+        }
+        if (hits == null) return null;
+        return rowIds.rows(hits);
+    }
+
+    /** The same test as {@link #search} for a single row, without the index. */
+    static boolean matches(String query, String description, String category) {
+        List<String> rowWords = tokenize(description);
+        rowWords.addAll(tokenize(category));
+        for (String term : tokenize(query)) {
+            boolean found = false;
+            for (String w : rowWords) {
+                if (w.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private void append(Postings p, int id, char initial) {
+        // A word repeated within the row is listed once
+        if (p.size > 0 && p.ids[p.size - 1] == id) return;
+        if (p.size == p.ids.length) p.ids = Arrays.copyOf(p.ids, p.size * 2);
+        p.ids[p.size++] = id;
+        initials.computeIfAbsent(initial, c -> new RowBitmap()).set(id);
+    }
+
+    // Rewrites the postings and initials in the dense ids, dropping words left with no rows
+    private void compact() {
+        int[] newId = rowIds.compact();
+        initials.clear();
+        for (Iterator<Map.Entry<String, Postings>> it = sorted.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Postings> e = it.next();
+            // Read before it.remove(), which may recycle the entry
+            String word = e.getKey();
+            Postings p = e.getValue();
+            int n = 0;
+            for (int i = 0; i < p.size; i++) {
+                int id = newId[p.ids[i]];
+                if (id >= 0) p.ids[n++] = id;
+            }
+            p.size = n;
+            if (n == 0) {
+                it.remove();
+                continue;
+            }
+            RowBitmap initial = initials.computeIfAbsent(word.charAt(0), c -> new RowBitmap());
+            for (int i = 0; i < n; i++) initial.set(p.ids[i]);
+        }
+        rehash(slotWords.length);
+    }
+}
+
+/**
+ * Trigram index over descriptions for fuzzy search. Each word is padded as
+ * "  word " and cut into overlapping three-character grams, so "amazon" and a
+ * mistyped "amazn" share most of theirs. A search counts the grams each row
+ * shares with the query and ranks rows by the Jaccard similarity of the two
+ * gram sets, touching only rows that share at least one gram; no row is ever
+ * compared character by character.
+ * <p>
+ * Postings hold {@link RowIds} insertion ids, so removes are as cheap as in {@link TextIndex}.
+ */
+class TrigramIndex {
+    /** Similarity a row needs to count as a match, the default of PostgreSQL's pg_trgm. */
+    static final double THRESHOLD = 0.3;
+    // Similarities are ranked in steps of 1 / SCALE
+    private static final long SCALE = 1 << 20;
+
+    // Open-addressed table from packed gram to its postings; 0 marks a free slot
+    private long[] slotGrams = new long[1024];
+    private int[][] slotIds = new int[1024][];
+    private int[] slotSizes = new int[1024];
+    private int gramCount;
+    // Number of distinct grams of each id
+    private int[] gramsOf = new int[1024];
+    // Per id, grams shared with the query; all zero between searches
+    private int[] shared = new int[0];
+    private long[] scan = new long[64];
+    private final RowIds rowIds = new RowIds();
+
+    /**
+     * Cuts the words of s into grams, three chars packed 16 bits apiece, at the
+     * front of buf, which must hold 2 * s.length() + 2; returns how many.
+     */
+    static int cut(String s, long[] buf) {
+        int n = 0;
+        long before = ' ', last = ' ';
+        boolean inWord = false;
+        for (int i = 0, len = s.length(); i <= len; i++) {
+            char c = i < len ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                if (!inWord) {
+                    before = last = ' ';
+                    inWord = true;
+                }
+                buf[n++] = before << 32 | last << 16 | c;
+                before = last;
+                last = c;
+            } else if (inWord) {
+                buf[n++] = before << 32 | last << 16 | ' ';
+                inWord = false;
+            }
+        }
+        return n;
+    }
+
+    /** The distinct grams of s, ascending. */
+    static long[] grams(String s) {
+        long[] buf = new long[2 * s.length() + 2];
+        int n = cut(s, buf);
+        Arrays.sort(buf, 0, n);
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (k == 0 || buf[k - 1] != buf[i]) buf[k++] = buf[i];
+        }
+        return Arrays.copyOf(buf, k);
+    }
+
+    /** Jaccard similarity of the gram sets of a and b, from 0 to 1. */
+    static double similarity(String a, String b) {
+        long[] x = grams(a), y = grams(b);
+        int common = 0;
+        for (int i = 0, j = 0; i < x.length && j < y.length; ) {
+            if (x[i] < y[j]) i++;
+            else if (x[i] > y[j]) j++;
+            else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return common == 0 ? 0 : (double) common / (x.length + y.length - common);
+    }
+
+    /** The same test as {@link #search} for a single description, without the index. */
+    static boolean matches(String query, String description) {
+        return similarity(query, description) >= THRESHOLD;
+    }
+
+    /** Indexes description as the row after the last one added. */
+    synchronized void add(String description) {
+        int id = rowIds.add();
+        if (id == gramsOf.length) gramsOf = Arrays.copyOf(gramsOf, id * 2);
+        if (scan.length < 2 * description.length() + 2) scan = new long[2 * description.length() + 2];
+        int n = cut(description, scan);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = claim(scan[i]);
+            int[] ids = slotIds[slot];
+            int size = slotSizes[slot];
+            // A gram repeated within the row is listed once
+            if (size > 0 && ids[size - 1] == id) continue;
+            if (size == ids.length) slotIds[slot] = ids = Arrays.copyOf(ids, size * 2);
+            ids[size] = id;
+            slotSizes[slot] = size + 1;
+            distinct++;
+        }
+        gramsOf[id] = distinct;
+    }
+
+    /** Forgets row, as a ledger remove of it does. */
+    synchronized void remove(int row) {
+        if (rowIds.remove(row)) compact();
+    }
+
+    synchronized void clear() {
+        slotGrams = new long[1024];
+        slotIds = new int[1024][];
+        slotSizes = new int[1024];
+        gramCount = 0;
+        gramsOf = new int[1024];
+        shared = new int[0];
+        rowIds.clear();
+    }
+
+    /**
+     * Rows at least {@link #THRESHOLD} similar to query, most similar first, ties
+     * by row. Edits and searches are synchronized, so searches may run off the EDT.
+     */
+    synchronized int[] search(String query) {
+        long[] q = grams(query);
+        if (shared.length < rowIds.size()) shared = new int[gramsOf.length];
+        for (long gram : q) {
+            int slot = find(gram);
+            if (slot < 0) continue;
+            int[] ids = slotIds[slot];
+            for (int i = 0, n = slotSizes[slot]; i < n; i++) shared[ids[i]]++;
+        }
+        // (SCALE - similarity, row) packed so one sort ranks them
+        long[] ranked = new long[16];
+        int n = 0;
+        int dead = 0;
+        for (int id = 0, ids = rowIds.size(); id < ids; id++) {
+            int common = shared[id];
+            if (common == 0) {
+                if (rowIds.isDeleted(id)) dead++;
+                continue;
+            }
+            shared[id] = 0;
+            if (rowIds.isDeleted(id)) {
+                dead++;
+                continue;
+            }
+            double similarity = (double) common / (q.length + gramsOf[id] - common);
+            if (similarity < THRESHOLD) continue;
+            if (n == ranked.length) ranked = Arrays.copyOf(ranked, n * 2);
+            ranked[n++] = (SCALE - Math.round(similarity * SCALE)) << 32 | (id - dead);
+        }
+        Arrays.sort(ranked, 0, n);
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) rows[i] = (int) ranked[i];
+        return rows;
+    }
+
+    private int find(long gram) {
+        int mask = slotGrams.length - 1;
+        for (int i = home(gram, mask); slotGrams[i] != 0; i = (i + 1) & mask) {
+            if (slotGrams[i] == gram) return i;
+        }
+        return -1;
+    }
+
+    // Finds the slot of gram, taking a free one if it is new
+    private int claim(long gram) {
+        if ((gramCount + 1) * 2 > slotGrams.length) rehash(slotGrams.length * 2);
+        int mask = slotGrams.length - 1;
+        int i = home(gram, mask);
+        for (; slotGrams[i] != gram; i = (i + 1) & mask) {
+            if (slotGrams[i] == 0) {
+                slotGrams[i] = gram;
+                slotIds[i] = new int[2];
+                gramCount++;
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static int home(long gram, int mask) {
+        return (int) ((gram * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    // Moves the grams that still have postings into a table of capacity slots
+    private void rehash(int capacity) {
+        long[] grams = slotGrams;
+        int[][] ids = slotIds;
+        int[] sizes = slotSizes;
+        slotGrams = new long[capacity];
+        slotIds = new int[capacity][];
+        slotSizes = new int[capacity];
+        gramCount = 0;
+        int mask = capacity - 1;
+        for (int s = 0; s < grams.length; s++) {
+            if (grams[s] == 0 || sizes[s] == 0) continue;
+            int i = home(grams[s], mask);
+            while (slotGrams[i] != 0) i = (i + 1) & mask;
+            slotGrams[i] = grams[s];
+            slotIds[i] = ids[s];
+            slotSizes[i] = sizes[s];
+            gramCount++;
+        }
+    }
+
+    // Moves postings and gram counts to the dense ids; a new id never exceeds its old one
+    private void compact() {
+        int[] newId = rowIds.compact();
+        for (int id = 0; id < newId.length; id++) {
+            if (newId[id] >= 0) gramsOf[newId[id]] = gramsOf[id];
+        }
+        for (int s = 0; s < slotGrams.length; s++) {
+            if (slotGrams[s] == 0) continue;
+            int[] ids = slotIds[s];
+            int n = 0;
+            for (int i = 0; i < slotSizes[s]; i++) {
+                int id = newId[ids[i]];
+                if (id >= 0) ids[n++] = id;
+            }
+            slotSizes[s] = n;
+        }
+        rehash(slotGrams.length);
+    }
+}
+
+/**
+ * Criteria for the rows a table shows. Null fields match everything, as does
+ * {@link #ANY_CATEGORY}; category is an id in the manager's dictionary. The
+ * amount bounds are inclusive cents. text is a {@link TextIndex} word search,
+ * or a {@link TrigramIndex} search of descriptions when fuzzy.
+ */
+class LedgerFilter {
+    /** A category that matches every row; idOf's -1 for an unknown name matches none. */
+    static final int ANY_CATEGORY = Integer.MIN_VALUE;
+    static final LedgerFilter NONE = new LedgerFilter(ANY_CATEGORY, null, null, null, null, null, null, false);
+
+    final int category;
+    final Transaction.Type type;
+    final LocalDate from;
+    final LocalDate to;
+    final Long minAmount;
+    final Long maxAmount;
+    final String text;
+    final boolean fuzzy;
+
+    LedgerFilter(int category, Transaction.Type type, LocalDate from, LocalDate to,
+                 Long minAmount, Long maxAmount, String text, boolean fuzzy) {
+        this.category = category;
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.text = text == null || TextIndex.tokenize(text).isEmpty() ? null : text;
+        this.fuzzy = fuzzy;
+    }
+
+    boolean isEmpty() {
+        return category == ANY_CATEGORY && type == null && from == null && to == null
+                && minAmount == null && maxAmount == null && text == null;
+    }
+
+    boolean test(LedgerStore store, int row) {
+        if (category != ANY_CATEGORY && store.categoryId(row) != category) return false;
+        if (type != null && store.type(row) != type) return false;
+        int day = store.epochDay(row);
+        if (from != null && day < from.toEpochDay()) return false;
+        if (to != null && day > to.toEpochDay()) return false;
+        if (text != null && !(fuzzy ? TrigramIndex.matches(text, store.description(row))
+                : TextIndex.matches(text, store.description(row), store.category(row)))) return false;
+        return testAmount(store, row);
+    }
+
+    /** The one criterion no index answers. */
+    boolean testAmount(LedgerStore store, int row) {
+        long amount = store.amount(row);
+        return (minAmount == null || amount >= minAmount) && (maxAmount == null || amount <= maxAmount);
+    }
+}
+
+/**
+ * Owns transactions.journal on a dedicated thread. Callers only enqueue
+ * records; the writer drains everything that piled up, writes it as one batch
+ * and syncs it according to the {@link FsyncPolicy}, so a burst of edits costs
+ * one flush. The queue is bounded: if the disk falls 4096 records behind,
+ * enqueueing waits for it to catch up rather than growing without limit.
+ */
+class JournalWriter {
+    /** When written batches are forced to disk; set with -Dtracker.fsync=commit|interval|none. */
+    enum FsyncPolicy {
+        COMMIT, INTERVAL, NONE;
+
+        static FsyncPolicy fromSystemProperty() {
+            String v = System.getProperty("tracker.fsync", "commit");
+            try {
+                return valueOf(v.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return COMMIT;
+            }
+        }
+    }
+
+    // Period for FsyncPolicy.INTERVAL; override with -Dtracker.fsync.interval=<millis>
+    private static final long SYNC_INTERVAL_MILLIS = Long.getLong("tracker.fsync.interval", 1000L);
+    private static final Object STOP = new Object();
+
+    private static final class Removal {
+        final int index;
+        Removal(int index) { this.index = index; }
+    }
+
+    private static final class Rotation {
+        final LedgerStore snapshot;
+        Rotation(LedgerStore snapshot) { this.snapshot = snapshot; }
+    }
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(4096);
+    private final Path journalFile;
+    private final Path compactingFile;
+    private final FsyncPolicy policy = FsyncPolicy.fromSystemProperty();
+    private final Consumer<LedgerStore> onRotated;
+    private final Runnable onRotationFailed;
+    private final Consumer<IOException> onError;
+    private final CsvRowEncoder encoder = new CsvRowEncoder();
+    private final Thread thread;
+    private FileOutputStream out;
+    private BufferedWriter w;
+    // Journal length after the last fully written batch, or -1 while no stream is open
+    private long committedLength = -1;
+    private boolean unsynced;
+    private long lastSync;
+    // Set by a failed write and cleared by the next rotation; adds and removes are dropped meanwhile
+    private volatile boolean broken;
+
+    /**
+     * onRotated receives the snapshot of a completed rotation, once the journal
+     * it covers has become compactingFile; onRotationFailed runs instead when
+     * the rotation could not be made. All callbacks run on the writer thread.
+     */
+    JournalWriter(Path journalFile, Path compactingFile, Consumer<LedgerStore> onRotated,
+                  Runnable onRotationFailed, Consumer<IOException> onError) {
+        this.journalFile = journalFile;
+        this.compactingFile = compactingFile;
+        this.onRotated = onRotated;
+        this.onRotationFailed = onRotationFailed;
+        this.onError = onError;
+        thread = new Thread(this::run, "ledger-journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void added(Transaction t) { enqueue(t); }
+
+    void removed(int index) { enqueue(new Removal(index)); }
+
+    /** Closes the journal once everything before this point is written and hands snapshot to onRotated. */
+    void rotate(LedgerStore snapshot) { enqueue(new Rotation(snapshot)); }
+
+    /**
+     * True once a write has failed. The journal then ends at the last complete
+     * batch and later edits are not in it, so only a rotation with a snapshot
+     * of the whole ledger brings the files up to date again.
+     */
+    boolean broken() { return broken; }
+
+    /** Writes and syncs everything queued so far, then stops the thread. */
+    void close() {
+        enqueue(STOP);
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Object record) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(record);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        while (true) {
+            Object first;
+            try {
+                if (unsynced) {
+                    long wait = lastSync + SYNC_INTERVAL_MILLIS - System.currentTimeMillis();
+                    first = queue.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                } else {
+                    first = queue.take();
+                }
+            } catch (InterruptedException e) {
+                continue;
+            }
+            batch.clear();
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch);
+            }
+            boolean stop = false;
+            for (Object record : batch) {
+                if (record == STOP) stop = true;
+                else if (record instanceof Rotation) applyRotation(((Rotation) record).snapshot);
+                else if (!broken) write(record);
+            }
+            if (!broken) {
+                try {
+                    if (w != null) {
+                        w.flush();
+                        committedLength = out.getChannel().size();
+                    }
+                    if (policy == FsyncPolicy.COMMIT || stop
+                            || (policy == FsyncPolicy.INTERVAL && System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS)) {
+                        sync();
+                    } else if (policy == FsyncPolicy.INTERVAL && w != null) {
+                        unsynced = true;
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            if (stop) {
+                closeQuietly();
+                return;
+            }
+        }
+    }
+
+    private void write(Object record) {
+        try {
+            if (w == null) {
+                out = new FileOutputStream(journalFile.toFile(), true);
+                w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+                committedLength = out.getChannel().size();
+            }
+            if (record instanceof Transaction) {
+                w.write('+');
+                encoder.write((Transaction) record, w);
+            } else {
+                w.write('-');
+                w.write(Integer.toString(((Removal) record).index));
+            }
+            w.newLine();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Stops appending after a failed write. Records are positional, so a
+     * "-index" written after a lost record would remove the wrong row on
+     * replay; the journal is cut back to its last complete batch instead,
+     * which replays to an earlier but consistent ledger.
+     */
+    private void fail(IOException e) {
+        long length = committedLength;
+        closeQuietly();
+        if (length >= 0) {
+            try (FileChannel ch = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                ch.truncate(length);
+            } catch (IOException ignored) {}
+        }
+        broken = true;
+        onError.accept(e);
+    }
+
+    private void sync() throws IOException {
+        if (w != null && policy != FsyncPolicy.NONE) out.getChannel().force(false);
+        unsynced = false;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private void applyRotation(LedgerStore snapshot) {
+        boolean rotated = false;
+        try {
+            rotateNow(snapshot);
+            rotated = true;
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            if (!rotated) onRotationFailed.run();
+        }
+    }
+
+    private void rotateNow(LedgerStore snapshot) throws IOException {
+        if (w != null) {
+            w.flush();
+            sync();
+            w.close();
+            w = null;
+            committedLength = -1;
+        }
+        if (Files.exists(journalFile)) Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+        else Files.createFile(compactingFile);
+        // The snapshot holds every edit, including any a failed write dropped
+        broken = false;
+        onRotated.accept(snapshot);
+    }
+
+    private void closeQuietly() {
+        committedLength = -1;
+        if (w == null) return;
+        try {
+            w.close();
+        } catch (IOException ignored) {}
+        w = null;
+    }
+}
+
+/** Receives a ledger load in order: the base rows in one or more batches, then each journal. */
+interface LoadSink {
+    void rows(LedgerStore batch);
+
+    /** A journal's records in order: a Transaction for an add, an Integer row for a remove. */
+    void journal(List<Object> records, boolean compacting);
+
+    /** Bytes of base rows read so far out of total. */
+    default void progress(long done, long total) { }
+}
+
+class TransactionManager {
+    /** Told about each add and remove right after it is applied; not about loads. */
+    interface RowListener {
+        void rowAdded(int row);
 
-    static DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        /** row is where the removed row was; later rows have already moved up one. */
+        void rowRemoved(int row);
+    }
 
-    Transaction(LocalDate date, String category, String description, double amount, Type type) {
-        this.date = date;
-        this.category = category;
-        this.description = description;
-        this.amount = amount;
-        this.type = type;
+    // Compact once the journal holds this many records and at least half as many as the ledger has rows
+    private static final int COMPACT_MIN_RECORDS = 1000;
+
+    private final CategoryDictionary categories = new CategoryDictionary();
+    // Codes its categories with the same ids, so aggregation never hashes a name
+    private final LedgerStore store = LedgerStore.create(categories);
+    // Running sum and row count per Transaction.Type ordinal, kept current on every mutation
+    private final long[] typeTotals = new long[Transaction.Type.values().length];
+    private final int[] typeCounts = new int[Transaction.Type.values().length];
+    // Expense sum per CategoryDictionary id
+    private long[] categoryExpense = new long[16];
+    private final DateIndex dates = new DateIndex();
+    private final RollupCube rollups = new RollupCube();
+    private final BalanceIndex balances = new BalanceIndex();
+    // Rows per CategoryDictionary id and per Transaction.Type ordinal
+    private RowSet[] categoryRows = new RowSet[16];
+    private final RowBitmap[] typeRows = new RowBitmap[Transaction.Type.values().length];
+    private final TextIndex words = new TextIndex();
+    private final TrigramIndex trigrams = new TrigramIndex();
+    private final Path dataFile = Path.of("transactions.csv");
+    // Append-only log of edits made since dataFile was last rewritten
+    private final Path journalFile = Path.of("transactions.journal");
+    // Journal being folded into dataFile by the compactor; replayed before journalFile on load
+    private final Path compactingFile = Path.of("transactions.journal.compacting");
+    private final Path tmpFile = Path.of("transactions.csv.tmp");
+    // Binary image of dataFile, rewritten after every compaction
+    private final Path snapshotFile = Path.of("transactions.snap");
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ledger-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Consumer<IOException> onError;
+    private final JournalWriter journal;
+    private int journalRecords;
+    // Set while loaded rows have not yet been indexed by date and balance
+    private boolean indexesStale;
+    // Set from the moment a rotation is queued until its compaction finishes
+    private volatile boolean compacting;
+    private volatile boolean compactionFailed;
+    // Set when a load ends early; saving edits to a partial ledger would drop the unread rows
+    private boolean readOnly;
+    private int version;
+    private final List<RowListener> rowListeners = new ArrayList<>();
+
+    /**
+     * onError is told about storage failures. After the initial load it is
+     * called from background threads, so UI code should hand off to the EDT.
+     */
+    TransactionManager(Consumer<IOException> onError) {
+        this(onError, true);
     }
 
-    String toCSV() {
-        // Escape commas in description/category
-        return String.join(",",
-                date.format(fmt),
-                escape(category),
-                escape(description),
-                String.format("%.2f", amount),
-                type.name());
+    /**
+     * With loadNow false the manager starts empty and the caller drives the
+     * load: {@link #read} off the EDT, the results into beginLoad, loadedRows,
+     * loadedJournal and endLoad on it.
+     */
+    TransactionManager(Consumer<IOException> onError, boolean loadNow) {
+        this.onError = onError;
+        for (int i = 0; i < typeRows.length; i++) typeRows[i] = new RowBitmap();
+        if (loadNow) load();
+        journal = new JournalWriter(journalFile, compactingFile, this::scheduleCompaction, () -> compacting = false,
+                e -> onError.accept(new IOException("Failed to save transactions: " + e.getMessage(), e)));
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "ledger-journal-shutdown"));
     }
 
-    static Transaction fromCSV(String line) {
-        String[] parts = splitCSV(line);
-        if (parts.length < 5) return null;
-        LocalDate date = LocalDate.parse(parts[0], fmt);
-        String category = unescape(parts[1]);
-        String desc = unescape(parts[2]);
-        double amt = Double.parseDouble(parts[3]);
-        Type t = Type.valueOf(parts[4]);
-        return new Transaction(date, category, desc, amt, t);
-    }
-
-    private static String escape(String s) {
-        if (s == null) return "";
-        return s.replace("\"", "\"\"").replace(",", "\,");
-    }
-
-    private static String unescape(String s) {
-        if (s == null) return "";
-        return s.replace("\\,", ",").replace("\"\"", "\"");
-    }
-
-    // Basic CSV splitter that respects escaped commas (we used \\ to escape commas)
-    private static String[] splitCSV(String line) {
-        List<String> parts = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        boolean esc = false;
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (esc) {
-                sb.append(c);
-                esc = false;
+    /** Read access to the rows; mutate only through add and remove so edits are journaled. */
+    LedgerStore store() { return store; }
+
+    CategoryDictionary categories() { return categories; }
+
+    void addRowListener(RowListener l) {
+        rowListeners.add(l);
+    }
+
+    void add(Transaction t) {
+        checkWritable();
+        apply(t);
+        journal.added(t);
+        journaled();
+        for (RowListener l : rowListeners) l.rowAdded(store.size() - 1);
+    }
+
+    void remove(int index) {
+        checkWritable();
+        if (unapply(index)) {
+            journal.removed(index);
+            journaled();
+            for (RowListener l : rowListeners) l.rowRemoved(index);
+        }
+    }
+
+    /** Changes with every add, remove and load step, whenever row numbers may have moved. */
+    int version() { return version; }
+
+    /** Rows fuzzily matching text, most similar first; unlike the rest of the manager, safe on any thread. */
+    int[] fuzzySearch(String text) {
+        return trigrams.search(text);
+    }
+
+    /** True after a cancelled or failed load; the rows are then incomplete and add and remove throw. */
+    boolean isReadOnly() { return readOnly; }
+
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("Ledger is read-only: it was not completely loaded");
+    }
+
+    private void apply(Transaction t) {
+        version++;
+        store.add(t);
+        int row = store.size() - 1;
+        aggregate(row, 1);
+        dates.insert(store.epochDay(row), row);
+        balances.add(store.epochDay(row), signedAmount(row), expenseAmount(row));
+    }
+
+    private boolean unapply(int index) {
+        if (index < 0 || index >= store.size()) return false;
+        version++;
+        aggregate(index, -1);
+        for (RowSet b : categoryRows) {
+            if (b != null) b.removeShift(index);
+        }
+        for (RowBitmap b : typeRows) b.removeShift(index);
+        words.remove(index);
+        trigrams.remove(index);
+        dates.remove(store.epochDay(index), index);
+        balances.add(store.epochDay(index), -signedAmount(index), -expenseAmount(index));
+        store.remove(index);
+        return true;
+    }
+
+    // Books a row into (sign 1) or out of (sign -1) every aggregate but the date and balance indexes
+    private void aggregate(int row, int sign) {
+        int cat = store.categoryId(row);
+        if (sign > 0) categories.increment(cat);
+        else categories.decrement(cat);
+        Transaction.Type type = store.type(row);
+        long amount = store.amount(row);
+        if (type == Transaction.Type.EXPENSE) addExpense(cat, sign * amount);
+        if (sign > 0) {
+            if (cat >= categoryRows.length) categoryRows = Arrays.copyOf(categoryRows, Math.max(cat + 1, categoryRows.length * 2));
+            if (categoryRows[cat] == null) categoryRows[cat] = new RowSet();
+            categoryRows[cat].add(row);
+            typeRows[type.ordinal()].set(row);
+            words.add(store.description(row), categories.name(cat));
+            trigrams.add(store.description(row));
+        }
+        rollups.update(cat, store.epochDay(row), type, amount, sign);
+        typeTotals[type.ordinal()] += sign * amount;
+        typeCounts[type.ordinal()] += sign;
+    }
+
+    private long signedAmount(int row) {
+        return store.type(row) == Transaction.Type.INCOME ? store.amount(row) : -store.amount(row);
+    }
+
+    private long expenseAmount(int row) {
+        return store.type(row) == Transaction.Type.EXPENSE ? store.amount(row) : 0;
+    }
+
+    long totalIncome() {
+        return typeTotals[Transaction.Type.INCOME.ordinal()];
+    }
+
+    long totalExpense() {
+        return typeTotals[Transaction.Type.EXPENSE.ordinal()];
+    }
+
+    int count(Transaction.Type type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    /**
+     * Rows dated from..to inclusive, in date order, in O(log n + k); null bounds
+     * are open.
+     */
+    int[] rowsBetween(LocalDate from, LocalDate to) {
+        return dates.rows(from == null ? Integer.MIN_VALUE : Transaction.clampedDay(from),
+                to == null ? Integer.MAX_VALUE : Transaction.clampedDay(to));
+    }
+
+    /**
+     * Rows passing every criterion of f, ascending, or most similar first for a
+     * fuzzy text search. Category and type come from row sets, dates from the
+     * date index and text from the word or trigram index, all intersected word
+     * by word; only the rows left are checked for amount.
+     */
+    int[] filter(LedgerFilter f) {
+        return filter(f, f.fuzzy && f.text != null ? trigrams.search(f.text) : null);
+    }
+
+    /**
+     * As {@link #filter(LedgerFilter)} for a fuzzy f, given ranked, the result
+     * of {@link #fuzzySearch} for f.text made while version() had its current
+     * value; the search is the slow part and need not run on the EDT.
+     */
+    int[] filter(LedgerFilter f, int[] ranked) {
+        RowBitmap hits = null;
+        if (f.category != LedgerFilter.ANY_CATEGORY) {
+            int id = f.category;
+            if (id < 0 || id >= categoryRows.length || categoryRows[id] == null) return new int[0];
+            hits = categoryRows[id].toBitmap();
+        }
+        if (f.type != null) {
+            RowBitmap b = typeRows[f.type.ordinal()];
+            hits = hits == null ? b.copy() : hits.and(b);
+        }
+        if (f.from != null || f.to != null) {
+            RowBitmap inRange = new RowBitmap();
+            for (int row : rowsBetween(f.from, f.to)) inRange.set(row);
+            hits = hits == null ? inRange : hits.and(inRange);
+        }
+        if (f.text != null) {
+            RowBitmap found;
+            if (f.fuzzy) {
+                found = new RowBitmap();
+                for (int row : ranked) found.set(row);
             } else {
-                if (c == '\\') {
-                    esc = true;
-                } else if (c == ',') {
-                    parts.add(sb.toString());
-                    sb.setLength(0);
-                } else {
-                    sb.append(c);
-                }
+                found = words.search(f.text);
+            }
+            hits = hits == null ? found : hits.and(found);
+        }
+        int[] rows;
+        if (ranked != null) {
+            // Keeps the similarity order, less the rows other criteria ruled out
+            rows = new int[ranked.length];
+            int n = 0;
+            for (int row : ranked) {
+                if (hits.get(row)) rows[n++] = row;
             }
+            rows = Arrays.copyOf(rows, n);
+        } else if (hits != null) {
+            rows = hits.toRows();
+        } else {
+            rows = new int[store.size()];
+            for (int i = 0; i < rows.length; i++) rows[i] = i;
         }
-        parts.add(sb.toString());
-        return parts.toArray(new String[0]);
+        if (f.minAmount == null && f.maxAmount == null) return rows;
+        int n = 0;
+        for (int row : rows) {
+            if (f.testAmount(store, row)) rows[n++] = row;
+        }
+        return n == rows.length ? rows : Arrays.copyOf(rows, n);
     }
-}
 
-class TransactionManager {
-    private final List<Transaction> transactions = new ArrayList<>();
-    private final Path dataFile = Path.of("transactions.csv");
+    /** Income minus expense over every row dated on or before date, in O(log days). */
+    long balanceAsOf(LocalDate date) {
+        return balances.balanceAsOf(Transaction.clampedDay(date));
+    }
 
-    TransactionManager() {
-        load();
+    /** Balances as of from, from + stepDays, ... up to to inclusive. */
+    long[] balanceCurve(LocalDate from, LocalDate to, int stepDays) {
+        return balances.curve(Math.toIntExact(from.toEpochDay()), Math.toIntExact(to.toEpochDay()), stepDays);
     }
 
-    List<Transaction> all() { return transactions; }
+    /** Net amount and spend per day over the whole history, for the timeline chart. */
+    DailySeries dailySeries() {
+        return balances.series();
+    }
 
-    void add(Transaction t) {
-        transactions.add(t);
-        save();
+    /** Total of one category, or of all when category is null, over the months from..to inclusive. */
+    long periodTotal(String category, YearMonth from, YearMonth to, Transaction.Type type) {
+        int id = rollupId(category);
+        return id == Integer.MIN_VALUE ? 0 : rollups.total(id, from, to, type);
     }
 
-    void remove(int index) {
-        if (index >= 0 && index < transactions.size()) {
-            transactions.remove(index);
-            save();
+    /** A month's total for one category, or all when category is null, next to the previous month's. */
+    RollupCube.MonthOverMonth monthOverMonth(String category, YearMonth month, Transaction.Type type) {
+        int id = rollupId(category);
+        if (id == Integer.MIN_VALUE) return new RollupCube.MonthOverMonth(0, 0);
+        return rollups.monthOverMonth(id, month, type);
+    }
+
+    // Maps a category name to its cube id; Integer.MIN_VALUE when it was never seen
+    private int rollupId(String category) {
+        if (category == null) return RollupCube.ALL_CATEGORIES;
+        int id = categories.idOf(category);
+        return id < 0 ? Integer.MIN_VALUE : id;
+    }
+
+    /** Expense total per category in use, ordered by category name; costs O(categories), not O(rows). */
+    Map<String, Long> expenseByCategory() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (String name : categories.sortedNames()) {
+            long v = categoryExpense[categories.idOf(name)];
+            if (v != 0) map.put(name, v);
         }
+        return map;
     }
 
-    double totalIncome() {
-        return transactions.stream().filter(t -> t.type == Transaction.Type.INCOME).mapToDouble(t -> t.amount).sum();
+    private void addExpense(int category, long amount) {
+        if (category >= categoryExpense.length) {
+            categoryExpense = Arrays.copyOf(categoryExpense, Math.max(category + 1, categoryExpense.length * 2));
+        }
+        categoryExpense[category] += amount;
+    }
+
+    // Queues a rotation once the journal is worth folding into dataFile, or at once if it has failed
+    private void journaled() {
+        journalRecords++;
+        if (journalRecords >= COMPACT_MIN_RECORDS && journalRecords >= store.size() / 2) rotateJournal();
+        else repairJournal();
+    }
+
+    /**
+     * After a failed journal write, queues a rotation whose compaction rewrites
+     * dataFile from memory, since the journal no longer holds every edit.
+     * Call on the thread that owns the manager.
+     */
+    void repairJournal() {
+        if (journal.broken()) rotateJournal();
     }
 
-    double totalExpense() {
-        return transactions.stream().filter(t -> t.type == Transaction.Type.EXPENSE).mapToDouble(t -> t.amount).sum();
+    private void rotateJournal() {
+        if (compacting || compactionFailed || readOnly) return;
+        compacting = true;
+        journalRecords = 0;
+        journal.rotate(store.copy());
     }
 
-    void save() {
-        try (BufferedWriter w = Files.newBufferedWriter(dataFile)) {
-            for (Transaction t : transactions) {
-                w.write(t.toCSV());
-                w.newLine();
+    private void scheduleCompaction(LedgerStore snapshot) {
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                compact(snapshot);
+            } catch (IOException e) {
+                compactionFailed = true;
+                onError.accept(new IOException("Failed to compact transactions: " + e.getMessage(), e));
+            } finally {
+                compacting = false;
             }
+        });
+    }
+
+    /**
+     * Rewrites dataFile from a snapshot that already includes compactingFile.
+     * Deleting compactingFile is the commit point: a complete tmpFile without a
+     * compactingFile beside it is finished by {@link #recover()} on the next load.
+     */
+    private void compact(LedgerStore snapshot) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(tmpFile.toFile());
+             BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            writeCSV(snapshot, w);
+            w.flush();
+            out.getChannel().force(true);
+        }
+        Files.delete(compactingFile);
+        Files.move(tmpFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // dataFile is committed; the snapshot is only a startup cache, so failing it must not stop later compactions
+        try {
+            LedgerSnapshot.write(snapshotFile, snapshot, dataFile);
         } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Failed to save transactions: " + e.getMessage());
+            try {
+                Files.deleteIfExists(snapshotFile);
+            } catch (IOException ignored) {}
+            onError.accept(new IOException("Failed to write the startup snapshot: " + e.getMessage(), e));
+        }
+    }
+
+    /** Writes rows as CSV lines; shared by compaction and the dashboard's export. */
+    static void writeCSV(LedgerStore rows, BufferedWriter w) throws IOException {
+        CsvRowEncoder enc = new CsvRowEncoder();
+        for (int i = 0, n = rows.size(); i < n; i++) {
+            enc.write(rows, i, w);
+            w.newLine();
         }
     }
 
+    // Finishes or discards a compaction that was interrupted by a crash
+    private void recover() throws IOException {
+        if (!Files.exists(tmpFile)) return;
+        if (Files.exists(compactingFile)) Files.delete(tmpFile);
+        else Files.move(tmpFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     void load() {
-        transactions.clear();
-        if (!Files.exists(dataFile)) return;
-        try (BufferedReader r = Files.newBufferedReader(dataFile)) {
+        beginLoad();
+        boolean complete = false;
+        try {
+            read(new LoadSink() {
+                @Override
+                public void rows(LedgerStore batch) { loadedRows(batch); }
+
+                @Override
+                public void journal(List<Object> records, boolean compacting) { loadedJournal(records, compacting); }
+            }, () -> false);
+            complete = true;
+        } catch (Exception e) {
+            // Malformed rows throw unchecked exceptions from the parser
+            onError.accept(new IOException("Failed to load transactions: " + e.getMessage(), e));
+        }
+        endLoad(complete);
+    }
+
+    /**
+     * Reads the ledger files into sink without touching this manager's state,
+     * so it may run on any thread. Stops quietly once cancelled returns true.
+     */
+    void read(LoadSink sink, BooleanSupplier cancelled) throws IOException {
+        recover();
+        LedgerStore snapshot = store.newEmpty();
+        if (LedgerSnapshot.read(snapshotFile, dataFile, snapshot)) {
+            sink.rows(snapshot);
+        } else if (Files.exists(dataFile)) {
+            CsvLedgerLoader.load(dataFile, store, sink, cancelled);
+        }
+        if (cancelled.getAsBoolean()) return;
+        if (Files.exists(compactingFile)) sink.journal(readJournal(compactingFile), true);
+        if (cancelled.getAsBoolean()) return;
+        if (Files.exists(journalFile)) sink.journal(readJournal(journalFile), false);
+    }
+
+    /** Empties the manager ahead of loadedRows calls. */
+    void beginLoad() {
+        version++;
+        store.clear();
+        categories.clear();
+        Arrays.fill(typeTotals, 0);
+        Arrays.fill(typeCounts, 0);
+        Arrays.fill(categoryExpense, 0);
+        rollups.clear();
+        dates.rebuild(store);
+        balances.clear();
+        categoryRows = new RowSet[16];
+        for (RowBitmap b : typeRows) b.clear();
+        words.clear();
+        trigrams.clear();
+        journalRecords = 0;
+        indexesStale = false;
+        readOnly = false;
+    }
+
+    /** Appends a batch of base rows; date and balance indexing waits for the journals or endLoad. */
+    void loadedRows(LedgerStore batch) {
+        version++;
+        int from = store.size();
+        store.addAll(batch);
+        for (int i = from, n = store.size(); i < n; i++) aggregate(i, 1);
+        indexesStale = true;
+    }
+
+    /** Applies a journal read by {@link #read} without journaling it again. */
+    void loadedJournal(List<Object> records, boolean compacting) {
+        indexRows();
+        for (Object r : records) {
+            if (r instanceof Transaction) apply((Transaction) r);
+            else unapply((Integer) r);
+        }
+        if (!compacting) {
+            journalRecords += records.size();
+        } else if (!this.compacting) {
+            // A previous compaction never committed; finish it before the live journal grows further
+            scheduleCompaction(store.copy());
+        }
+    }
+
+    /**
+     * Ends a load; queries are exact from here on. A load that was cancelled
+     * or failed leaves the manager read-only, so nothing is journaled or
+     * compacted over the rows it never read.
+     */
+    void endLoad(boolean complete) {
+        indexRows();
+        readOnly = !complete;
+    }
+
+    // One sort over the base rows beats inserting them one by one
+    private void indexRows() {
+        if (!indexesStale) return;
+        dates.rebuild(store);
+        balances.rebuild(store);
+        indexesStale = false;
+    }
+
+    // Parses journal records in order; a torn record at the tail ends the list
+    private static List<Object> readJournal(Path file) throws IOException {
+        List<Object> records = new ArrayList<>();
+        try (BufferedReader r = Files.newBufferedReader(file)) {
             String line;
             while ((line = r.readLine()) != null) {
-                Transaction t = Transaction.fromCSV(line);
-                if (t != null) transactions.add(t);
+                if (line.isEmpty()) continue;
+                try {
+                    if (line.charAt(0) == '+') {
+                        Transaction t = Transaction.fromCSV(line.substring(1));
+                        if (t == null) break;
+                        records.add(t);
+                    } else if (line.charAt(0) == '-') {
+                        records.add(Integer.parseInt(line.substring(1)));
+                    } else {
+                        break;
+                    }
+                } catch (RuntimeException e) {
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+}
+
+/**
+ * Parses transactions.csv for load(). Large files are memory mapped and split
+ * into newline-aligned chunks that are parsed on the common fork/join pool;
+ * chunk results are joined in file order so row order is preserved.
+ */
+class CsvLedgerLoader {
+    // Below this size the sequential reader wins over the cost of forking
+    private static final long PARALLEL_THRESHOLD = 4L << 20;
+    // Chunks are mapped one at a time, so this also bounds each mapping
+    private static final long MAX_CHUNK = 64L << 20;
+
+    /**
+     * Hands the rows of file to sink in file order, one batch per chunk, each
+     * as soon as it and the chunks before it are parsed. Batches are new stores
+     * made by prototype.newEmpty(). Stops quietly once cancelled returns true.
+     */
+    static void load(Path file, LedgerStore prototype, LoadSink sink, BooleanSupplier cancelled) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < PARALLEL_THRESHOLD) {
+                sink.rows(parseLines(ByteBuffer.wrap(Files.readAllBytes(file)), prototype.newEmpty()));
+                sink.progress(size, size);
+                return;
+            }
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            long target = Math.min(MAX_CHUNK, Math.max(1L << 20, size / (parallelism * 4L)));
+            List<ChunkTask> tasks = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = start + target >= size ? size : nextLineStart(ch, start + target, size);
+                tasks.add(new ChunkTask(ch, start, end - start, prototype.newEmpty()));
+                start = end;
+            }
+            for (ChunkTask task : tasks) task.fork();
+            long done = 0;
+            try {
+                for (ChunkTask task : tasks) {
+                    if (cancelled.getAsBoolean()) break;
+                    sink.rows(task.join());
+                    done += task.length;
+                    sink.progress(done, size);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (ChunkTask task : tasks) task.cancel(false);
+            }
+        }
+    }
+
+    // Parses every line of buf, which must start at a line boundary, into out
+    static LedgerStore parseLines(ByteBuffer buf, LedgerStore out) {
+        TransactionParser parser = new TransactionParser();
+        int lineStart = 0;
+        int n = buf.limit();
+        for (int i = 0; i < n; i++) {
+            if (buf.get(i) == '\n') {
+                parser.parseInto(buf, lineStart, i, out);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < n) parser.parseInto(buf, lineStart, n, out);
+        return out;
+    }
+
+    // Returns the offset just past the first '\n' at or after pos, or size if there is none
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static class ChunkTask extends RecursiveTask<LedgerStore> {
+        private final FileChannel ch;
+        private final long offset;
+        private final long length;
+        private final LedgerStore out;
+
+        ChunkTask(FileChannel ch, long offset, long length, LedgerStore out) {
+            this.ch = ch;
+            this.offset = offset;
+            this.length = length;
+            this.out = out;
+        }
+
+        @Override
+        protected LedgerStore compute() {
+            MappedByteBuffer map;
+            try {
+                map = ch.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return parseLines(map, out);
+        }
+    }
+}
+
+/**
+ * Versioned binary image of transactions.csv. Strings are dictionary coded and
+ * the remaining fields are stored column by column, so loading is a handful of
+ * bulk reads instead of per-line parsing. The snapshot records the size and
+ * modification time of the CSV it was taken from and is ignored once those no
+ * longer match, e.g. after the CSV was edited by hand.
+ */
+class LedgerSnapshot {
+    private static final int MAGIC = 0x4C534E50; // "LSNP"
+    private static final int VERSION = 2;
+
+    static void write(Path file, LedgerStore txs, Path base) throws IOException {
+        int n = txs.size();
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> dict = new ArrayList<>();
+        int[] days = new int[n];
+        long[] amounts = new long[n];
+        byte[] types = new byte[n];
+        int[] cats = new int[n];
+        int[] descs = new int[n];
+        int dictBytes = 0;
+        for (int i = 0; i < n; i++) {
+            days[i] = txs.epochDay(i);
+            amounts[i] = txs.amount(i);
+            types[i] = (byte) txs.type(i).ordinal();
+            for (int k = 0; k < 2; k++) {
+                String s = k == 0 ? txs.category(i) : txs.description(i);
+                Integer id = ids.get(s);
+                if (id == null) {
+                    id = dict.size();
+                    ids.put(s, id);
+                    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                    dict.add(b);
+                    dictBytes += 4 + b.length;
+                }
+                if (k == 0) cats[i] = id; else descs[i] = id;
+            }
+        }
+        BasicFileAttributes attrs = Files.readAttributes(base, BasicFileAttributes.class);
+        ByteBuffer buf = ByteBuffer.allocate(32 + dictBytes + n * 21 + 8);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putLong(attrs.size()).putLong(attrs.lastModifiedTime().toMillis())
+                .putInt(n).putInt(dict.size());
+        for (byte[] b : dict) buf.putInt(b.length).put(b);
+        buf.asIntBuffer().put(days);
+        buf.position(buf.position() + n * 4);
+        buf.asLongBuffer().put(amounts);
+        buf.position(buf.position() + n * 8);
+        buf.put(types);
+        buf.asIntBuffer().put(cats);
+        buf.position(buf.position() + n * 4);
+        buf.asIntBuffer().put(descs);
+        buf.position(buf.position() + n * 4);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putLong(crc.getValue());
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Appends the snapshotted rows to out, which must be empty. Returns false and
+     * leaves out empty when the snapshot is missing, corrupt or stale.
+     */
+    static boolean read(Path file, Path base, LedgerStore out) {
+        if (!Files.exists(file) || !Files.exists(base)) return false;
+        try {
+            ByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size < 40 || size > Integer.MAX_VALUE) return false;
+                buf = ByteBuffer.allocate((int) size);
+                while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+                buf.flip();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), 0, buf.limit() - 8);
+            if (buf.getLong(buf.limit() - 8) != crc.getValue()) return false;
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return false;
+            BasicFileAttributes attrs = Files.readAttributes(base, BasicFileAttributes.class);
+            if (buf.getLong() != attrs.size() || buf.getLong() != attrs.lastModifiedTime().toMillis()) return false;
+
+            int n = buf.getInt();
+            String[] dict = new String[buf.getInt()];
+            for (int i = 0; i < dict.length; i++) {
+                int len = buf.getInt();
+                dict[i] = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+                buf.position(buf.position() + len);
+            }
+            int[] days = new int[n];
+            long[] amounts = new long[n];
+            byte[] types = new byte[n];
+            int[] cats = new int[n];
+            int[] descs = new int[n];
+            buf.asIntBuffer().get(days);
+            buf.position(buf.position() + n * 4);
+            buf.asLongBuffer().get(amounts);
+            buf.position(buf.position() + n * 8);
+            buf.get(types);
+            buf.asIntBuffer().get(cats);
+            buf.position(buf.position() + n * 4);
+            buf.asIntBuffer().get(descs);
+
+            Transaction.Type[] typeValues = Transaction.Type.values();
+            for (int i = 0; i < n; i++) {
+                out.append(days[i], dict[cats[i]], dict[descs[i]], amounts[i], typeValues[types[i]]);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable snapshots are treated as stale; the CSV is authoritative
+            out.clear();
+            return false;
+        }
+    }
+}
+
+/**
+ * Loads a fresh TransactionManager on a background thread. Until a listener
+ * attaches, rows are applied and aggregated on that thread, so the load can
+ * start before any window needs it; the login screen starts one while the
+ * user types. After attach every step is applied on the EDT and reported to
+ * the listener, which may then read the manager freely.
+ */
+class LedgerLoad {
+    interface Listener {
+        /** Base rows from..to exclusive were appended. */
+        void rowsLoaded(int from, int to);
+
+        /** A journal was replayed; rows may have been removed anywhere. */
+        void journalLoaded();
+
+        void progress(int percent);
+
+        /**
+         * The last call; the manager's indexes are complete. Its rows are not
+         * if the load was cancelled or failed, and the manager is then read-only.
+         */
+        void finished(boolean complete);
+
+        /** May be called from any thread. */
+        void storageError(IOException e);
+    }
+
+    private final TransactionManager manager;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile boolean failed;
+    // Both guarded by this; listener is set once, on the EDT
+    private Listener listener;
+    private boolean finished;
+    private final List<IOException> earlyErrors = new ArrayList<>();
+    private volatile int percent;
+
+    LedgerLoad() {
+        manager = new TransactionManager(this::reportError, false);
+        manager.beginLoad();
+        Thread t = new Thread(this::run, "ledger-loader");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    TransactionManager manager() { return manager; }
+
+    /**
+     * Hands the load over to the EDT. Call on the EDT before touching the
+     * manager; rows already loaded are reported at once.
+     */
+    void attach(Listener l) {
+        boolean done;
+        List<IOException> errors;
+        synchronized (this) {
+            listener = l;
+            done = finished;
+            errors = new ArrayList<>(earlyErrors);
+            earlyErrors.clear();
+        }
+        errors.forEach(l::storageError);
+        l.progress(percent);
+        if (manager.store().size() > 0) l.rowsLoaded(0, manager.store().size());
+        if (done) l.finished(complete());
+    }
+
+    /** Stops reading; rows already queued for the EDT are dropped. */
+    void cancel() {
+        cancelled.set(true);
+    }
+
+    private void run() {
+        try {
+            manager.read(new LoadSink() {
+                @Override
+                public void rows(LedgerStore batch) {
+                    int[] from = new int[1];
+                    deliver(() -> {
+                        from[0] = manager.store().size();
+                        manager.loadedRows(batch);
+                    }, l -> l.rowsLoaded(from[0], manager.store().size()));
+                }
+
+                @Override
+                public void journal(List<Object> records, boolean compacting) {
+                    deliver(() -> manager.loadedJournal(records, compacting), Listener::journalLoaded);
+                }
+
+                @Override
+                public void progress(long done, long total) {
+                    percent = (int) (done * 100 / Math.max(1, total));
+                    deliver(() -> { }, l -> l.progress(percent));
+                }
+            }, () -> cancelled.get() || failed);
+        } catch (Exception e) {
+            // Malformed rows throw unchecked exceptions from the parser
+            fail(e);
+        } finally {
+            finish();
+        }
+    }
+
+    // Not subject to cancel, and queued behind every batch since invokeLater keeps order
+    private void finish() {
+        synchronized (this) {
+            if (listener == null) {
+                manager.endLoad(complete());
+                finished = true;
+                return;
+            }
+        }
+        SwingUtilities.invokeLater(() -> {
+            manager.endLoad(complete());
+            listener.finished(complete());
+        });
+    }
+
+    private boolean complete() {
+        return !cancelled.get() && !failed;
+    }
+
+    private void fail(Exception e) {
+        failed = true;
+        reportError(new IOException("Failed to load transactions: " + e.getMessage(), e));
+    }
+
+    // Applies a step here while nobody is attached, otherwise on the EDT
+    private void deliver(Runnable apply, Consumer<Listener> notify) {
+        synchronized (this) {
+            if (listener == null) {
+                apply.run();
+                return;
+            }
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (cancelled.get() || failed) return;
+            try {
+                apply.run();
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            notify.accept(listener);
+        });
+    }
+
+    private void reportError(IOException e) {
+        Listener l;
+        synchronized (this) {
+            l = listener;
+            if (l == null) {
+                earlyErrors.add(e);
+                return;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Failed to load transactions: " + e.getMessage());
         }
+        l.storageError(e);
     }
 }
 
@@ -180,6 +3108,8 @@ class LoginFrame extends JFrame {
     private final JTextField userField = new JTextField(20);
     private final JPasswordField passField = new JPasswordField(20);
     private final Path usersFile = Path.of("users.txt");
+    // Reads the ledger while the user types; dies with the process if nobody logs in
+    private final LedgerLoad preload = new LedgerLoad();
 
     LoginFrame() {
         setTitle("Smart Expense Tracker - Login");
@@ -239,7 +3169,7 @@ class LoginFrame extends JFrame {
         }
         if (checkCredentials(u, p)) {
             dispose();
-            new DashboardFrame(u);
+            new DashboardFrame(u, preload);
         } else {
             JOptionPane.showMessageDialog(this, "Invalid credentials.");
         }
@@ -278,15 +3208,44 @@ class LoginFrame extends JFrame {
 }
 
 class DashboardFrame extends JFrame {
-    private final TransactionManager manager = new TransactionManager();
-    private final TransactionTableModel tableModel = new TransactionTableModel(manager.all());
+    private final LedgerLoad load;
+    private final TransactionManager manager;
+    private final TransactionTableModel tableModel;
     private final JLabel incomeLabel = new JLabel();
     private final JLabel expenseLabel = new JLabel();
     private final JLabel balanceLabel = new JLabel();
     private final PieChartPanel chartPanel = new PieChartPanel();
+    private final TimelinePanel timelinePanel = new TimelinePanel();
+    private final JComboBox<String> filterBox = new JComboBox<>();
+    private final JComboBox<String> periodBox = new JComboBox<>(new String[]{"All time", "Last 30 days", "Last 90 days", "Last 365 days"});
+    private final JComboBox<String> typeFilterBox = new JComboBox<>(new String[]{"All", "INCOME", "EXPENSE"});
+    private final JTextField minAmountField = new JTextField(6);
+    private final JTextField maxAmountField = new JTextField(6);
+    private final JTextField textFilterField = new JTextField(12);
+    private final JCheckBox fuzzyBox = new JCheckBox("Fuzzy");
+    // Fuzzy searches wait for a pause in typing, then run off the EDT
+    private final Timer fuzzyTimer = new Timer(150, e -> applyFilter());
+    // Bumped per filter change; a search whose generation is no longer current is ignored
+    private int filterGeneration;
+    private int filterVersion = -1;
+    // Set while updateFilterCategories refills filterBox, whose events would reset the table
+    private boolean updatingFilter;
+    private final JButton addBtn = new JButton("Add Transaction");
+    private final JButton delBtn = new JButton("Delete Selected");
+    private final JButton exportBtn = new JButton("Export CSV");
+    private final JProgressBar loadProgress = new JProgressBar(0, 100);
+    private final JButton cancelLoadBtn = new JButton("Cancel");
+    private final JPanel loadPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
 
-    DashboardFrame(String username) {
+    /** load may still be running; the dashboard takes it over and shows the rest as it arrives. */
+    DashboardFrame(String username, LedgerLoad load) {
+        this.load = load;
+        this.manager = load.manager();
+        this.tableModel = new TransactionTableModel(manager);
+        // Set first: a load that already ended is reported at once and marks the title read-only
         setTitle("Dashboard - " + username);
+        // Before anything reads the manager, which the loader thread owns until then
+        startLoad();
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(900, 600);
         setLocationRelativeTo(null);
@@ -300,9 +3259,6 @@ class DashboardFrame extends JFrame {
         title.setFont(title.getFont().deriveFont(16f).deriveFont(Font.BOLD));
         top.add(title, BorderLayout.WEST);
 
-        JButton addBtn = new JButton("Add Transaction");
-        JButton delBtn = new JButton("Delete Selected");
-        JButton exportBtn = new JButton("Export CSV");
         JPanel topRight = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         topRight.add(exportBtn);
         topRight.add(delBtn);
@@ -316,12 +3272,17 @@ class DashboardFrame extends JFrame {
 
         JTable table = new JTable(tableModel);
         table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        LedgerCellRenderer.install(table);
+        table.setRowSorter(new LedgerRowSorter(tableModel));
         JScrollPane leftScroll = new JScrollPane(table);
         split.setLeftComponent(leftScroll);
 
         chartPanel.setPreferredSize(new Dimension(300,300));
         JPanel right = new JPanel(new BorderLayout());
-        right.add(chartPanel, BorderLayout.CENTER);
+        JTabbedPane charts = new JTabbedPane();
+        charts.addTab("Categories", chartPanel);
+        charts.addTab("Timeline", timelinePanel);
+        right.add(charts, BorderLayout.CENTER);
 
         // summary panel under chart
         JPanel sums = new JPanel(new GridLayout(3,1,6,6));
@@ -337,12 +3298,31 @@ class DashboardFrame extends JFrame {
         root.add(split, BorderLayout.CENTER);
 
         // bottom: filter and quick stats
-        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        bottom.add(new JLabel("Filter by category:"));
-        JComboBox<String> filterBox = new JComboBox<>();
-        filterBox.addItem("All");
-        updateFilterCategories(filterBox);
-        bottom.add(filterBox);
+        JPanel bottom = new JPanel(new BorderLayout());
+        JPanel filters = new JPanel(new GridLayout(2, 1));
+        JPanel filterRow1 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterRow1.add(new JLabel("Filter by category:"));
+        updateFilterCategories();
+        filterRow1.add(filterBox);
+        filterRow1.add(new JLabel("Type:"));
+        filterRow1.add(typeFilterBox);
+        filterRow1.add(new JLabel("Period:"));
+        filterRow1.add(periodBox);
+        JPanel filterRow2 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterRow2.add(new JLabel("Amount from:"));
+        filterRow2.add(minAmountField);
+        filterRow2.add(new JLabel("to:"));
+        filterRow2.add(maxAmountField);
+        filterRow2.add(new JLabel("Search:"));
+        filterRow2.add(textFilterField);
+        filterRow2.add(fuzzyBox);
+        filters.add(filterRow1);
+        filters.add(filterRow2);
+        bottom.add(filters, BorderLayout.WEST);
+        loadProgress.setStringPainted(true);
+        loadPanel.add(loadProgress);
+        loadPanel.add(cancelLoadBtn);
+        bottom.add(loadPanel, BorderLayout.EAST);
         root.add(bottom, BorderLayout.SOUTH);
 
         add(root);
@@ -352,14 +3332,14 @@ class DashboardFrame extends JFrame {
         delBtn.addActionListener(e -> {
             int sel = table.getSelectedRow();
             if (sel >= 0) {
-                int modelIdx = table.convertRowIndexToModel(sel);
+                // The model row indexes the filtered view; the manager wants the ledger row
+                int row = tableModel.baseRow(table.convertRowIndexToModel(sel));
                 int confirm = JOptionPane.showConfirmDialog(this, "Delete selected transaction?", "Confirm", JOptionPane.YES_NO_OPTION);
                 if (confirm == JOptionPane.YES_OPTION) {
-                    manager.remove(modelIdx);
-                    tableModel.fireTableDataChanged();
+                    manager.remove(row);
                     refreshSummary();
-                    chartPanel.setTransactions(manager.all());
-                    updateFilterCategories(filterBox);
+                    chartsChanged();
+                    updateFilterCategories();
                 }
             } else {
                 JOptionPane.showMessageDialog(this, "Select a row to delete.");
@@ -371,10 +3351,7 @@ class DashboardFrame extends JFrame {
             if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
                 File f = fc.getSelectedFile();
                 try (BufferedWriter w = new BufferedWriter(new FileWriter(f))) {
-                    for (Transaction t : manager.all()) {
-                        w.write(t.toCSV());
-                        w.newLine();
-                    }
+                    TransactionManager.writeCSV(manager.store(), w);
                     JOptionPane.showMessageDialog(this, "Exported to " + f.getAbsolutePath());
                 } catch (IOException ex) {
                     JOptionPane.showMessageDialog(this, "Failed to export: " + ex.getMessage());
@@ -383,13 +3360,25 @@ class DashboardFrame extends JFrame {
         });
 
         filterBox.addActionListener(e -> {
-            String sel = (String) filterBox.getSelectedItem();
-            if (sel == null || sel.equals("All")) {
-                tableModel.setFilter(null);
-            } else {
-                tableModel.setFilter(sel);
-            }
-            tableModel.fireTableDataChanged();
+            if (!updatingFilter) applyFilter();
+        });
+
+        typeFilterBox.addActionListener(e -> applyFilter());
+        periodBox.addActionListener(e -> applyFilter());
+        minAmountField.addActionListener(e -> applyFilter());
+        maxAmountField.addActionListener(e -> applyFilter());
+        fuzzyBox.addActionListener(e -> applyFilter());
+        // Narrows the table on every keystroke, or after a pause for a fuzzy search
+        fuzzyTimer.setRepeats(false);
+        textFilterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { textChanged(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { textChanged(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { }
         });
 
         // selection listener to show details
@@ -399,20 +3388,103 @@ class DashboardFrame extends JFrame {
                 if (!e.getValueIsAdjusting()) {
                     int sel = table.getSelectedRow();
                     if (sel >= 0) {
-                        int modelIdx = table.convertRowIndexToModel(sel);
-                        Transaction t = manager.all().get(modelIdx);
+                        int row = tableModel.baseRow(table.convertRowIndexToModel(sel));
+                        LedgerStore store = manager.store();
                         // show tooltip-style details
-                        table.setToolTipText(t.description + " (" + t.date + ")");
+                        table.setToolTipText(store.description(row) + " (" + LocalDate.ofEpochDay(store.epochDay(row)) + ")");
                     }
                 }
             }
         });
 
-        // initialize view
-        refreshSummary();
-        chartPanel.setTransactions(manager.all());
+        cancelLoadBtn.addActionListener(e -> load.cancel());
+
+        // initialize view
+        refreshSummary();
+        chartPanel.setManager(manager);
+        timelinePanel.setManager(manager);
+
+        setVisible(true);
+    }
+
+    /**
+     * Takes over the ledger load, which fills the window batch by batch, so
+     * the window is usable at once whatever the ledger's size. Editing and
+     * filtering wait for the load; a cancelled or failed load leaves the rows read
+     * so far on screen, read-only, since saving edits against them would lose the rest.
+     */
+    private void startLoad() {
+        setLoading(true);
+        load.attach(new LedgerLoad.Listener() {
+            @Override
+            public void rowsLoaded(int from, int to) {
+                tableModel.rowsAppended(from, to);
+                refreshSummary();
+                chartsChanged();
+            }
+
+            @Override
+            public void journalLoaded() {
+                tableModel.refresh();
+            }
+
+            @Override
+            public void progress(int percent) {
+                loadProgress.setValue(percent);
+            }
+
+            @Override
+            public void finished(boolean complete) {
+                loadFinished(complete);
+            }
+
+            @Override
+            public void storageError(IOException e) {
+                reportStorageError(e);
+            }
+        });
+    }
+
+    // A failed load is treated like a cancelled one: the rows read so far stay on screen, read-only
+    private void loadFinished(boolean complete) {
+        tableModel.refresh();
+        refreshSummary();
+        chartsChanged();
+        updateFilterCategories();
+        if (!complete) {
+            setTitle(getTitle() + " (partially loaded, read-only)");
+            addBtn.setEnabled(false);
+            delBtn.setEnabled(false);
+            exportBtn.setEnabled(true);
+            setFiltersEnabled(true);
+            loadPanel.setVisible(false);
+        } else {
+            setLoading(false);
+        }
+    }
+
+    private void setLoading(boolean loading) {
+        addBtn.setEnabled(!loading);
+        delBtn.setEnabled(!loading);
+        // The rows change under an export while batches are still being applied
+        exportBtn.setEnabled(!loading);
+        setFiltersEnabled(!loading);
+        loadPanel.setVisible(loading);
+    }
 
-        setVisible(true);
+    private void setFiltersEnabled(boolean enabled) {
+        for (JComponent c : new JComponent[]{filterBox, typeFilterBox, periodBox, minAmountField, maxAmountField, textFilterField, fuzzyBox}) {
+            c.setEnabled(enabled);
+        }
+    }
+
+    // Storage failures arrive from the journal and compaction threads
+    private void reportStorageError(IOException e) {
+        e.printStackTrace();
+        SwingUtilities.invokeLater(() -> {
+            manager.repairJournal();
+            JOptionPane.showMessageDialog(this, e.getMessage());
+        });
     }
 
     private void openAddDialog() {
@@ -421,25 +3493,105 @@ class DashboardFrame extends JFrame {
         Transaction t = dlg.getResult();
         if (t != null) {
             manager.add(t);
-            tableModel.fireTableDataChanged();
             refreshSummary();
-            chartPanel.setTransactions(manager.all());
+            chartsChanged();
+            updateFilterCategories();
         }
     }
 
     private void refreshSummary() {
-        double inc = manager.totalIncome();
-        double exp = manager.totalExpense();
-        incomeLabel.setText(String.format("Total Income: %.2f", inc));
-        expenseLabel.setText(String.format("Total Expense: %.2f", exp));
-        balanceLabel.setText(String.format("Balance: %.2f", inc - exp));
+        long inc = manager.totalIncome();
+        long exp = manager.totalExpense();
+        incomeLabel.setText("Total Income: " + Money.format(inc));
+        expenseLabel.setText("Total Expense: " + Money.format(exp));
+        balanceLabel.setText("Balance: " + Money.format(inc - exp));
+    }
+
+    // Rebuilds the filter choices only when the set of categories in use changed
+    private void updateFilterCategories() {
+        CategoryDictionary dict = manager.categories();
+        if (dict.version() == filterVersion) return;
+        filterVersion = dict.version();
+        Object selected = filterBox.getSelectedItem();
+        updatingFilter = true;
+        try {
+            filterBox.removeAllItems();
+            filterBox.addItem("All");
+            for (String c : dict.sortedNames()) filterBox.addItem(c);
+            if (selected != null && dict.sortedNames().contains(selected)) filterBox.setSelectedItem(selected);
+        } finally {
+            updatingFilter = false;
+        }
+        // Only when the selected category went away does the table need a new view
+        if (!Objects.equals(selected, filterBox.getSelectedItem())) applyFilter();
+    }
+
+    // Both charts draw from the manager's totals, which just changed
+    private void chartsChanged() {
+        chartPanel.dataChanged();
+        timelinePanel.dataChanged();
+    }
+
+    private void textChanged() {
+        if (fuzzyBox.isSelected()) fuzzyTimer.restart();
+        else applyFilter();
     }
 
-    private void updateFilterCategories(JComboBox<String> box) {
-        List<String> cats = manager.all().stream().map(t -> t.category).distinct().sorted().collect(Collectors.toList());
-        box.removeAllItems();
-        box.addItem("All");
-        for (String c : cats) box.addItem(c);
+    // Reads every filter control into one LedgerFilter
+    private void applyFilter() {
+        String sel = (String) filterBox.getSelectedItem();
+        int category = sel == null || sel.equals("All") ? LedgerFilter.ANY_CATEGORY : manager.categories().idOf(sel);
+        String typeName = (String) typeFilterBox.getSelectedItem();
+        Transaction.Type type = typeName == null || typeName.equals("All") ? null : Transaction.Type.valueOf(typeName);
+        int[] days = {0, 30, 90, 365};
+        int d = days[periodBox.getSelectedIndex()];
+        LocalDate from = d == 0 ? null : LocalDate.now().minusDays(d - 1);
+        Long min = amountBound(minAmountField);
+        Long max = amountBound(maxAmountField);
+        LedgerFilter f = new LedgerFilter(category, type, from, null, min, max,
+                textFilterField.getText(), fuzzyBox.isSelected());
+        fuzzyTimer.stop();
+        int gen = ++filterGeneration;
+        if (f.fuzzy && f.text != null) search(f, gen);
+        else tableModel.setFilter(f);
+    }
+
+    // 100ms and more on a large ledger, so the old view stays up until the search is done
+    private void search(LedgerFilter f, int gen) {
+        int version = manager.version();
+        new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return manager.fuzzySearch(f.text);
+            }
+
+            @Override
+            protected void done() {
+                if (gen != filterGeneration) return;
+                // Rows moved while it ran, so its row numbers are stale
+                if (manager.version() != version) {
+                    search(f, gen);
+                    return;
+                }
+                try {
+                    tableModel.setFilter(f, get());
+                } catch (InterruptedException | ExecutionException e) {
+                    tableModel.setFilter(f);
+                }
+            }
+        }.execute();
+    }
+
+    // Blank or unparseable is no bound; unparseable shows in red rather than interrupting a search
+    private static Long amountBound(JTextField field) {
+        String text = field.getText().trim();
+        Long bound = null;
+        try {
+            if (!text.isEmpty()) bound = Money.parse(text);
+        } catch (NumberFormatException ignored) {
+        }
+        field.setForeground(bound == null && !text.isEmpty() ? Color.RED : UIManager.getColor("TextField.foreground"));
+        return bound;
     }
 }
 
@@ -491,10 +3643,10 @@ class AddTransactionDialog extends JDialog {
 
         ok.addActionListener(e -> {
             try {
-                LocalDate d = LocalDate.parse(dateF.getText().trim());
+                LocalDate d = Transaction.checkDate(LocalDate.parse(dateF.getText().trim()));
                 String cat = catF.getText().trim();
                 String desc = descF.getText().trim();
-                double amt = Double.parseDouble(amtF.getText().trim());
+                long amt = Money.parse(amtF.getText().trim());
                 Transaction.Type type = Transaction.Type.valueOf((String) typeBox.getSelectedItem());
                 if (amt <= 0) throw new NumberFormatException("Amount must be positive");
                 result = new Transaction(d, cat, desc, amt, type);
@@ -508,29 +3660,125 @@ class AddTransactionDialog extends JDialog {
     Transaction getResult() { return result; }
 }
 
-class TransactionTableModel extends AbstractTableModel {
-    private List<Transaction> base;
-    private List<Transaction> view;
-    private String filterCategory = null;
+class TransactionTableModel extends AbstractTableModel implements TransactionManager.RowListener {
+    private final TransactionManager manager;
+    private final LedgerStore base;
+    private final LedgerRow cursor;
+    private final SortIndex sortIndex;
+    // Base rows that pass the filter in view[0..viewSize), in ledger order or, for
+    // a fuzzy text filter, most similar first; null while unfiltered
+    private int[] view;
+    private int viewSize;
+    private LedgerFilter filter = LedgerFilter.NONE;
     private final String[] cols = {"Date","Category","Description","Amount","Type"};
+    // Amounts are cents; LedgerCellRenderer turns dates and amounts into text
+    private final Class<?>[] types = {LocalDate.class, String.class, String.class, Long.class, Transaction.Type.class};
+
+    TransactionTableModel(TransactionManager manager) {
+        this.manager = manager;
+        this.base = manager.store();
+        this.cursor = new LedgerRow(base);
+        this.sortIndex = new SortIndex(base);
+        manager.addRowListener(this);
+    }
+
+    void setFilter(LedgerFilter filter) {
+        setFilter(filter, null);
+    }
 
-    TransactionTableModel(List<Transaction> data) {
-        this.base = data;
-        this.view = new ArrayList<>(base);
+    /** As setFilter, with the fuzzy search for filter.text already made by TransactionManager.fuzzySearch. */
+    void setFilter(LedgerFilter filter, int[] ranked) {
+        this.filter = filter;
+        rebuildView(ranked);
+        fireTableDataChanged();
     }
 
-    void setFilter(String category) {
-        this.filterCategory = category;
-        rebuildView();
+    /** Tells the table about base rows from..to exclusive appended by a load. */
+    void rowsAppended(int from, int to) {
+        if (from >= to) return;
+        sortIndex.invalidate();
+        if (view == null) fireTableRowsInserted(from, to - 1);
+        else refresh();
     }
 
-    private void rebuildView() {
-        if (filterCategory == null) view = new ArrayList<>(base);
-        else view = base.stream().filter(t -> t.category.equals(filterCategory)).collect(Collectors.toList());
+    /** Re-applies the filter after the ledger changed wholesale and tells the table. */
+    void refresh() {
+        sortIndex.invalidate();
+        rebuildView(null);
+        fireTableDataChanged();
+    }
+
+    /** Per-column orders of every ledger row, kept current with the ledger. */
+    SortIndex sortIndex() { return sortIndex; }
+
+    boolean isFiltered() { return view != null; }
+
+    /** True while model rows run most similar first rather than in ledger order. */
+    boolean isRanked() { return view != null && filter.fuzzy && filter.text != null; }
+
+    private void rebuildView(int[] ranked) {
+        if (filter.isEmpty()) {
+            view = null;
+            viewSize = 0;
+        } else {
+            view = ranked != null ? manager.filter(filter, ranked) : manager.filter(filter);
+            viewSize = view.length;
+        }
+    }
+
+    // The added row is the last base row, so it lands at the end of the view if it passes
+    @Override
+    public void rowAdded(int row) {
+        sortIndex.added(row);
+        if (view == null) {
+            fireTableRowsInserted(row, row);
+            return;
+        }
+        if (!filter.test(base, row)) return;
+        if (viewSize == view.length) view = Arrays.copyOf(view, Math.max(16, viewSize * 2));
+        view[viewSize++] = row;
+        fireTableRowsInserted(viewSize - 1, viewSize - 1);
+    }
+
+    @Override
+    public void rowRemoved(int row) {
+        sortIndex.removed(row);
+        if (view == null) {
+            fireTableRowsDeleted(row, row);
+            return;
+        }
+        if (isRanked()) {
+            // Ranked, so the row can be anywhere
+            int pos = -1;
+            for (int i = 0; i < viewSize; i++) {
+                if (view[i] == row) pos = i;
+                else if (view[i] > row) view[i]--;
+            }
+            if (pos >= 0) {
+                System.arraycopy(view, pos + 1, view, pos, viewSize - pos - 1);
+                viewSize--;
+                fireTableRowsDeleted(pos, pos);
+            }
+            return;
+        }
+        int pos = Arrays.binarySearch(view, 0, viewSize, row);
+        int from = pos >= 0 ? pos : -pos - 1;
+        // Rows after the removed one moved up a place in the base
+        for (int i = from; i < viewSize; i++) view[i]--;
+        if (pos >= 0) {
+            System.arraycopy(view, pos + 1, view, pos, viewSize - pos - 1);
+            viewSize--;
+            fireTableRowsDeleted(pos, pos);
+        }
+    }
+
+    /** Maps a row of this model, which is a row of the filtered view, to its ledger row. */
+    int baseRow(int modelRow) {
+        return view == null ? modelRow : view[modelRow];
     }
 
     @Override
-    public int getRowCount() { return view.size(); }
+    public int getRowCount() { return view == null ? base.size() : viewSize; }
 
     @Override
     public int getColumnCount() { return cols.length; }
@@ -538,58 +3786,571 @@ class TransactionTableModel extends AbstractTableModel {
     @Override
     public String getColumnName(int col) { return cols[col]; }
 
+    @Override
+    public Class<?> getColumnClass(int col) { return types[col]; }
+
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Transaction t = view.get(rowIndex);
+        LedgerRow t = cursor.at(baseRow(rowIndex));
         switch (columnIndex) {
-            case 0: return t.date.toString();
-            case 1: return t.category;
-            case 2: return t.description;
-            case 3: return String.format("%.2f", t.amount);
-            case 4: return t.type.name();
+            case 0: return t.date();
+            case 1: return t.category();
+            case 2: return t.description();
+            case 3: return t.amount();
+            case 4: return t.type();
         }
         return "";
     }
 }
 
+/**
+ * Every ledger row in ascending order of each table column, ties by row.
+ * An order is built on first use with one parallel sort of packed
+ * (value or rank, row) longs, then kept current on add and remove in O(n)
+ * without sorting again.
+ */
+class SortIndex {
+    // Columns as TransactionTableModel numbers them
+    static final int DATE = 0, CATEGORY = 1, DESCRIPTION = 2, AMOUNT = 3, TYPE = 4, COLUMNS = 5;
+
+    private final LedgerStore store;
+    // Per column: rows in order in [0, size), or null until asked for
+    private final int[][] orders = new int[COLUMNS][];
+    // Per column: dense rank of each row's value, or null until asked for; patched on edits like orders
+    private final int[][] ranks = new int[COLUMNS][];
+    private int size;
+
+    SortIndex(LedgerStore store) {
+        this.store = store;
+    }
+
+    int size() { return size; }
+
+    /** Rows in ascending order of column, ties by row; entries past size() are junk. */
+    int[] order(int column) {
+        if (orders[column] == null) build(column);
+        return orders[column];
+    }
+
+    /** Each row's dense rank in column: equal values share a rank and ranks have no gaps; entries past size() are junk. */
+    int[] ranks(int column) {
+        if (ranks[column] == null) {
+            int[] order = order(column);
+            int[] r = new int[size];
+            int rank = 0;
+            for (int i = 0; i < size; i++) {
+                if (i > 0 && compare(column, order[i - 1], order[i]) != 0) rank++;
+                r[order[i]] = rank;
+            }
+            ranks[column] = r;
+        }
+        return ranks[column];
+    }
+
+    /** Compares the column values of rows a and b, ignoring the rows themselves. */
+    int compare(int column, int a, int b) {
+        switch (column) {
+            case DATE: return Integer.compare(store.epochDay(a), store.epochDay(b));
+            case CATEGORY: return store.category(a).compareTo(store.category(b));
+            case DESCRIPTION: return store.description(a).compareTo(store.description(b));
+            case AMOUNT: return Long.compare(store.amount(a), store.amount(b));
+            default: return Integer.compare(store.type(a).ordinal(), store.type(b).ordinal());
+        }
+    }
+
+    /** Drops every order, for when the ledger changed wholesale. */
+    void invalidate() {
+        Arrays.fill(orders, null);
+        Arrays.fill(ranks, null);
+        size = store.size();
+    }
+
+    /** Places row, just appended as the last row, in every built order and ranking. */
+    void added(int row) {
+        size = store.size();
+        for (int c = 0; c < COLUMNS; c++) {
+            int[] order = orders[c];
+            if (order == null) continue;
+            // Equal values go by row and row is the largest, so it lands after them
+            int lo = 0, hi = size - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(c, order[mid], row) <= 0) lo = mid + 1;
+                else hi = mid;
+            }
+            if (order.length < size) order = orders[c] = Arrays.copyOf(order, Math.max(16, order.length * 2));
+            System.arraycopy(order, lo, order, lo + 1, size - 1 - lo);
+            order[lo] = row;
+
+            int[] rank = ranks[c];
+            if (rank == null) continue;
+            if (rank.length < size) rank = ranks[c] = Arrays.copyOf(rank, Math.max(16, rank.length * 2));
+            int prev = lo > 0 ? order[lo - 1] : -1;
+            if (prev >= 0 && compare(c, prev, row) == 0) {
+                rank[row] = rank[prev];
+            } else {
+                // A new value: every greater one moves up a rank to keep them dense
+                int r = prev >= 0 ? rank[prev] + 1 : 0;
+                if (lo < size - 1) {
+                    for (int i = 0; i < size - 1; i++) {
+                        if (rank[i] >= r) rank[i]++;
+                    }
+                }
+                rank[row] = r;
+            }
+        }
+    }
+
+    /** Drops row, already removed from the store, and renumbers the rows after it. */
+    void removed(int row) {
+        size = store.size();
+        for (int c = 0; c < COLUMNS; c++) {
+            int[] order = orders[c];
+            if (order == null) continue;
+            int[] rank = ranks[c];
+            int k = 0;
+            int before = -1;
+            boolean shared = false;
+            for (int i = 0; i <= size; i++) {
+                int r = order[i];
+                if (r != row) {
+                    order[k++] = r > row ? r - 1 : r;
+                    before = r;
+                } else if (rank != null) {
+                    // Equal values sit next to each other in the order
+                    shared = (before >= 0 && rank[before] == rank[row]) || (i < size && rank[order[i + 1]] == rank[row]);
+                }
+            }
+            if (rank == null) continue;
+            int gone = rank[row];
+            System.arraycopy(rank, row + 1, rank, row, size - row);
+            if (!shared) {
+                for (int i = 0; i < size; i++) {
+                    if (rank[i] > gone) rank[i]--;
+                }
+            }
+        }
+    }
+
+    private void build(int column) {
+        int n = store.size();
+        size = n;
+        int[] rank = null;
+        long[] keys = new long[n];
+        if (column == CATEGORY || column == DESCRIPTION) {
+            String[] values = new String[n];
+            for (int i = 0; i < n; i++) values[i] = column == CATEGORY ? store.category(i) : store.description(i);
+            rank = denseRanks(values);
+            for (int i = 0; i < n; i++) keys[i] = (long) rank[i] << 32 | i;
+        } else {
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                long v = column == DATE ? store.epochDay(i) : column == AMOUNT ? store.amount(i) : store.type(i).ordinal();
+                keys[i] = v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (n > 0 && (max - min < 0 || max - min > Integer.MAX_VALUE)) {
+                // Too wide to pack beside the row; ranks are always narrow enough
+                rank = denseRanks(keys);
+                for (int i = 0; i < n; i++) keys[i] = (long) rank[i] << 32 | i;
+            } else {
+                for (int i = 0; i < n; i++) keys[i] = (keys[i] - min) << 32 | i;
+            }
+        }
+        Arrays.parallelSort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+        orders[column] = order;
+        ranks[column] = rank;
+    }
+
+    private static int[] denseRanks(long[] values) {
+        long[] distinct = values.clone();
+        Arrays.parallelSort(distinct);
+        int m = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[m - 1]) distinct[m++] = distinct[i];
+        }
+        int[] rank = new int[values.length];
+        for (int i = 0; i < values.length; i++) rank[i] = Arrays.binarySearch(distinct, 0, m, values[i]);
+        return rank;
+    }
+
+    private static int[] denseRanks(String[] values) {
+        // Sort only the distinct values; hashing beats a binary search of String compares per row
+        Map<String, Integer> ids = new HashMap<>();
+        int[] rank = new int[values.length];
+        for (int i = 0; i < values.length; i++) rank[i] = ids.computeIfAbsent(values[i], v -> ids.size());
+        String[] distinct = ids.keySet().toArray(new String[0]);
+        Arrays.parallelSort(distinct);
+        int[] rankOfId = new int[distinct.length];
+        for (int r = 0; r < distinct.length; r++) rankOfId[ids.get(distinct[r])] = r;
+        for (int i = 0; i < rank.length; i++) rank[i] = rankOfId[rank[i]];
+        return rank;
+    }
+}
+
+/**
+ * Sorts TransactionTableModel through its SortIndex, never through the cell
+ * values. The last sort key is a walk of its column's presorted rows; each
+ * key before it costs one parallel sort of packed (rank, position) longs.
+ * Single-row inserts and deletes patch the sorted view in place.
+ */
+class LedgerRowSorter extends RowSorter<TransactionTableModel> {
+    private static final int MAX_SORT_KEYS = 3;
+
+    private final TransactionTableModel model;
+    private List<SortKey> sortKeys = Collections.emptyList();
+    // Model row at each view row and back; both null while unsorted
+    private int[] viewToModel;
+    private int[] modelToView;
+
+    LedgerRowSorter(TransactionTableModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public TransactionTableModel getModel() { return model; }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        int at = -1;
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).getColumn() == column) at = i;
+        }
+        if (at == 0) {
+            SortOrder order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+            keys.set(0, new SortKey(column, order));
+        } else {
+            if (at > 0) keys.remove(at);
+            keys.add(0, new SortKey(column, SortOrder.ASCENDING));
+        }
+        setSortKeys(keys.size() > MAX_SORT_KEYS ? keys.subList(0, MAX_SORT_KEYS) : keys);
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) { return viewToModel == null ? index : viewToModel[index]; }
+
+    @Override
+    public int convertRowIndexToView(int index) { return modelToView == null ? index : modelToView[index]; }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> next = keys == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(keys));
+        for (SortKey k : next) {
+            if (k.getColumn() < 0 || k.getColumn() >= SortIndex.COLUMNS) throw new IllegalArgumentException("Invalid SortKey");
+        }
+        if (next.equals(sortKeys)) return;
+        sortKeys = next;
+        fireSortOrderChanged();
+        sort();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() { return sortKeys; }
+
+    @Override
+    public int getViewRowCount() { return model.getRowCount(); }
+
+    @Override
+    public int getModelRowCount() { return model.getRowCount(); }
+
+    @Override
+    public void modelStructureChanged() { sort(); }
+
+    @Override
+    public void allRowsChanged() { sort(); }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        if (viewToModel == null) return;
+        int delta = endRow - firstRow + 1;
+        if (delta > 16) {
+            sort();
+            return;
+        }
+        int[] old = viewToModel;
+        int[] next = new int[old.length + delta];
+        int n = 0;
+        for (int m : old) next[n++] = m >= firstRow ? m + delta : m;
+        for (int m = firstRow; m <= endRow; m++) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compareModelRows(next[mid], m) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            System.arraycopy(next, lo, next, lo + 1, n - lo);
+            next[lo] = m;
+            n++;
+        }
+        changed(old, next);
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        if (viewToModel == null) return;
+        int delta = endRow - firstRow + 1;
+        int[] old = viewToModel;
+        int[] next = new int[old.length - delta];
+        int n = 0;
+        for (int m : old) {
+            if (m < firstRow) next[n++] = m;
+            else if (m > endRow) next[n++] = m - delta;
+        }
+        changed(old, next);
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        if (viewToModel != null) sort();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsUpdated(firstRow, endRow);
+    }
+
+    private void sort() {
+        int[] old = viewToModel;
+        if (sortKeys.isEmpty() || sortKeys.get(0).getSortOrder() == SortOrder.UNSORTED) {
+            if (old == null) return;
+            viewToModel = modelToView = null;
+            fireRowSorterChanged(old);
+        } else {
+            changed(old == null ? new int[0] : old, sorted());
+        }
+    }
+
+    private void changed(int[] old, int[] next) {
+        viewToModel = next;
+        modelToView = new int[next.length];
+        for (int v = 0; v < next.length; v++) modelToView[next[v]] = v;
+        fireRowSorterChanged(old);
+    }
+
+    private int[] sorted() {
+        SortIndex index = model.sortIndex();
+        int n = model.getRowCount();
+        int last = sortKeys.size() - 1;
+        int[] rows;
+        if (model.isRanked()) {
+            // Model rows run most similar first; a stable pass for every key keeps that order among ties
+            rows = new int[n];
+            for (int m = 0; m < n; m++) rows[m] = m;
+            last++;
+        } else {
+            // Base row to model row, or -1 for rows the filter hides; null when nothing is hidden
+            int[] modelOf = null;
+            if (model.isFiltered()) {
+                modelOf = new int[index.size()];
+                Arrays.fill(modelOf, -1);
+                for (int m = 0; m < n; m++) modelOf[model.baseRow(m)] = m;
+            }
+            rows = walk(index, sortKeys.get(last), modelOf, n);
+        }
+        long[] packed = new long[n];
+        for (int k = last - 1; k >= 0; k--) {
+            SortKey key = sortKeys.get(k);
+            int[] rank = index.ranks(key.getColumn());
+            boolean desc = key.getSortOrder() == SortOrder.DESCENDING;
+            // Ties keep their position from the less significant keys, so each pass is stable
+            for (int p = 0; p < n; p++) {
+                int r = rank[model.baseRow(rows[p])];
+                packed[p] = (long) (desc ? -r : r) << 32 | p;
+            }
+            Arrays.parallelSort(packed);
+            int[] next = new int[n];
+            for (int p = 0; p < n; p++) next[p] = rows[(int) packed[p]];
+            rows = next;
+        }
+        return rows;
+    }
+
+    // Model rows in order of one key, ties by model row, straight off the presorted column
+    private static int[] walk(SortIndex index, SortKey key, int[] modelOf, int n) {
+        int[] order = index.order(key.getColumn());
+        int size = index.size();
+        int[] rows = new int[n];
+        int k = 0;
+        if (key.getSortOrder() != SortOrder.DESCENDING) {
+            for (int i = 0; i < size; i++) {
+                int m = modelOf == null ? order[i] : modelOf[order[i]];
+                if (m >= 0) rows[k++] = m;
+            }
+            return rows;
+        }
+        // Descending: runs of equal values from the top down, each run still by row
+        int[] rank = index.ranks(key.getColumn());
+        for (int end = size; end > 0; ) {
+            int start = end - 1;
+            while (start > 0 && rank[order[start - 1]] == rank[order[end - 1]]) start--;
+            for (int i = start; i < end; i++) {
+                int m = modelOf == null ? order[i] : modelOf[order[i]];
+                if (m >= 0) rows[k++] = m;
+            }
+            end = start;
+        }
+        return rows;
+    }
+
+    private int compareModelRows(int a, int b) {
+        SortIndex index = model.sortIndex();
+        int ba = model.baseRow(a), bb = model.baseRow(b);
+        for (SortKey key : sortKeys) {
+            int c = index.compare(key.getColumn(), ba, bb);
+            if (c != 0) return key.getSortOrder() == SortOrder.DESCENDING ? -c : c;
+        }
+        return Integer.compare(a, b);
+    }
+}
+
+/**
+ * Draws LocalDate cells as yyyy-MM-dd and Long cent cells as amounts. Text is
+ * formatted into a reused buffer and kept in a small direct-mapped cache, so
+ * repainting rows already seen allocates no strings.
+ */
+class LedgerCellRenderer extends DefaultTableCellRenderer {
+    private static final int SLOTS = 1 << 10;
+    private final char[] buf = new char[32];
+    private final long[] keys = new long[SLOTS];
+    private final String[] texts = new String[SLOTS];
+
+    /** Installs renderers for the date and amount columns of table. */
+    static void install(JTable table) {
+        table.setDefaultRenderer(LocalDate.class, new LedgerCellRenderer(SwingConstants.LEFT));
+        table.setDefaultRenderer(Long.class, new LedgerCellRenderer(SwingConstants.RIGHT));
+    }
+
+    LedgerCellRenderer(int alignment) {
+        setHorizontalAlignment(alignment);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+        if (value instanceof LocalDate) setText(date((LocalDate) value));
+        else if (value instanceof Long) setText(amount((Long) value));
+        else super.setValue(value);
+    }
+
+    private String date(LocalDate d) {
+        long key = d.toEpochDay();
+        int slot = slot(key);
+        if (texts[slot] != null && keys[slot] == key) return texts[slot];
+        int y = d.getYear();
+        String text;
+        if (y < 0 || y > 9999) {
+            text = d.toString();
+        } else {
+            digits(y, 4, 0);
+            buf[4] = '-';
+            digits(d.getMonthValue(), 2, 5);
+            buf[7] = '-';
+            digits(d.getDayOfMonth(), 2, 8);
+            text = new String(buf, 0, 10);
+        }
+        keys[slot] = key;
+        return texts[slot] = text;
+    }
+
+    private String amount(long cents) {
+        int slot = slot(cents);
+        if (texts[slot] != null && keys[slot] == cents) return texts[slot];
+        keys[slot] = cents;
+        return texts[slot] = new String(buf, 0, Money.formatTo(cents, buf, 0));
+    }
+
+    private void digits(int v, int width, int pos) {
+        for (int i = pos + width - 1; i >= pos; i--, v /= 10) buf[i] = (char) ('0' + v % 10);
+    }
+
+    private static int slot(long key) {
+        return (int) ((key ^ (key >>> 32)) * 0x9E3779B9L) >>> 22;
+    }
+}
+
+/**
+ * Expense pie and legend, drawn once into an offscreen image that later
+ * paints just copy. The image is redrawn only after {@link #dataChanged()}
+ * or when the panel's size or display scale changes, so dragging the split
+ * pane or scrolling the table across the chart costs one blit per paint.
+ */
 class PieChartPanel extends JPanel {
-    private List<Transaction> transactions = new ArrayList<>();
+    private TransactionManager manager;
+    private BufferedImage cache;
+    private boolean stale = true;
+    // Device pixels per user-space unit the cache was drawn at
+    private double cacheScale;
 
-    void setTransactions(List<Transaction> txs) {
-        this.transactions = new ArrayList<>(txs);
+    void setManager(TransactionManager manager) {
+        this.manager = manager;
+        dataChanged();
+    }
+
+    /** Redraws the chart from the manager's totals on the next paint. */
+    void dataChanged() {
+        stale = true;
         repaint();
     }
 
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        if (transactions == null || transactions.isEmpty()) {
-            g.drawString("No data to display", 20, 20);
+        int w = getWidth(), h = getHeight();
+        if (w <= 0 || h <= 0) return;
+        // On a scaled display the image is drawn at device resolution so the blit stays sharp
+        double scale = ((Graphics2D) g).getTransform().getScaleX();
+        int pw = (int) Math.ceil(w * scale), ph = (int) Math.ceil(h * scale);
+        if (stale || cache == null || cache.getWidth() != pw || cache.getHeight() != ph || cacheScale != scale) {
+            if (cache == null || cache.getWidth() != pw || cache.getHeight() != ph) {
+                cache = getGraphicsConfiguration() != null
+                        ? getGraphicsConfiguration().createCompatibleImage(pw, ph)
+                        : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D g2 = cache.createGraphics();
+            try {
+                Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+                if (hints instanceof Map) g2.addRenderingHints((Map<?, ?>) hints);
+                g2.scale(scale, scale);
+                g2.setColor(getBackground());
+                g2.fillRect(0, 0, w, h);
+                g2.setFont(getFont());
+                render(g2, w, h);
+            } finally {
+                g2.dispose();
+            }
+            cacheScale = scale;
+            stale = false;
+        }
+        g.drawImage(cache, 0, 0, w, h, null);
+    }
+
+    private void render(Graphics2D g2, int width, int height) {
+        g2.setColor(getForeground());
+        if (manager == null || manager.store().size() == 0) {
+            g2.drawString("No data to display", 20, 20);
             return;
         }
-        // Aggregate expenses by category only (pie for expense distribution)
-        var map = transactions.stream().filter(t -> t.type == Transaction.Type.EXPENSE)
-                .collect(Collectors.groupingBy(t -> t.category, Collectors.summingDouble(t -> t.amount)));
-        double total = map.values().stream().mapToDouble(Double::doubleValue).sum();
+        // Expense distribution kept current by the manager, ordered by category name
+        Map<String, Long> map = manager.expenseByCategory();
+        long total = map.values().stream().mapToLong(Long::longValue).sum();
         if (total <= 0) {
-            g.drawString("No expense data to display", 20, 20);
+            g2.drawString("No expense data to display", 20, 20);
             return;
         }
-        Graphics2D g2 = (Graphics2D) g;
-        int w = Math.min(getWidth(), getHeight()) - 40;
-        int x = 20 + (getWidth() - w)/2;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int w = Math.min(width, height) - 40;
+        int x = 20 + (width - w)/2;
         int y = 20;
-        int cx = x, cy = y;
         int start = 0;
         int i = 0;
         // choose a set of pleasing hues programmatically
-        for (String cat : map.keySet()) {
-            double v = map.get(cat);
-            int angle = (int) Math.round(v / total * 360);
-            // compute color from index
-            float hue = (i * 0.14f) % 1.0f;
-            Color ccol = Color.getHSBColor(hue, 0.6f, 0.9f);
-            g2.setColor(ccol);
+        Color[] colors = new Color[map.size()];
+        for (long v : map.values()) {
+            int angle = (int) Math.round((double) v / total * 360);
+            colors[i] = Color.getHSBColor((i * 0.14f) % 1.0f, 0.6f, 0.9f);
+            g2.setColor(colors[i]);
             g2.fillArc(x, y, w, w, start, angle);
             start += angle;
             i++;
@@ -600,15 +4361,180 @@ class PieChartPanel extends JPanel {
         i = 0;
         g2.setColor(Color.BLACK);
         g2.drawString("Expense distribution:", lx, ly-6);
-        for (String cat : map.keySet()) {
-            float hue = (i * 0.14f) % 1.0f;
-            Color ccol = Color.getHSBColor(hue, 0.6f, 0.9f);
-            g2.setColor(ccol);
+        for (Map.Entry<String, Long> e : map.entrySet()) {
+            g2.setColor(colors[i]);
             g2.fillRect(lx, ly + i*20, 12, 12);
             g2.setColor(Color.BLACK);
-            String label = String.format("%s (%.2f)", cat, map.get(cat));
+            String label = e.getKey() + " (" + Money.format(e.getValue()) + ")";
             g2.drawString(label, lx + 18, ly + i*20 + 12);
             i++;
         }
     }
 }
+
+/**
+ * Balance and daily spend over the whole history. The plot is reduced to the
+ * panel's pixel width on a background worker, balance by LTTB and spend by
+ * the peak of each pixel column, so painting twenty years of days costs the
+ * same as painting one month.
+ */
+class TimelinePanel extends JPanel {
+    private static final int INSET = 12;
+    private static final Color BALANCE = new Color(40, 90, 180);
+    private static final Color SPEND = new Color(210, 70, 60, 170);
+
+    /** What one paint draws, already reduced to at most one point per pixel column. */
+    private static final class Plot {
+        final int firstDay;
+        final int days;
+        final int[] balanceDays;
+        final long[] balanceValues;
+        final long[] spendBars;
+        final long minBalance;
+        final long maxBalance;
+        final long maxSpend;
+
+        Plot(DailySeries series, int width) {
+            firstDay = series.firstDay;
+            days = series.days();
+            long[] balances = series.balances();
+            balanceDays = DailySeries.lttb(balances, width);
+            balanceValues = new long[balanceDays.length];
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for (int i = 0; i < balanceDays.length; i++) {
+                long v = balanceValues[i] = balances[balanceDays[i]];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            minBalance = min;
+            maxBalance = max;
+            spendBars = DailySeries.columnMax(series.spent, width);
+            long peak = 0;
+            for (long v : spendBars) peak = Math.max(peak, v);
+            maxSpend = peak;
+        }
+    }
+
+    private TransactionManager manager;
+    private DailySeries series;
+    private Plot plot;
+    // Bumped per replot; a worker whose generation is no longer current is ignored
+    private int generation;
+    private int plottedWidth = -1;
+
+    TimelinePanel() {
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (plotWidth() != plottedWidth) replot();
+            }
+        });
+    }
+
+    void setManager(TransactionManager manager) {
+        this.manager = manager;
+        dataChanged();
+    }
+
+    /** Takes a new snapshot of the manager's daily totals and replots from it. */
+    void dataChanged() {
+        series = manager == null ? null : manager.dailySeries();
+        replot();
+    }
+
+    private int plotWidth() {
+        return getWidth() - 2 * INSET;
+    }
+
+    // The old plot stays on screen, stretched to the new size, until the worker is done
+    private void replot() {
+        int gen = ++generation;
+        int width = plottedWidth = plotWidth();
+        DailySeries s = series;
+        if (s == null || s.days() == 0 || width <= 0) {
+            plot = null;
+            repaint();
+            return;
+        }
+        new SwingWorker<Plot, Void>() {
+            @Override
+            protected Plot doInBackground() {
+                return new Plot(s, width);
+            }
+
+            @Override
+            protected void done() {
+                if (gen != generation) return;
+                try {
+                    plot = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    plot = null;
+                }
+                repaint();
+            }
+        }.execute();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Plot p = plot;
+        if (p == null) {
+            if (series == null || series.days() == 0) g.drawString("No data to display", 20, 20);
+            return;
+        }
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        FontMetrics fm = g2.getFontMetrics();
+        int line = fm.getHeight();
+        int left = INSET, width = getWidth() - 2 * INSET;
+        int top = INSET + line;
+        int bottom = getHeight() - INSET - line;
+        if (width <= 1 || bottom - top < 3 * line) return;
+        // Balance takes the upper two thirds, spend the rest
+        int split = top + (bottom - top) * 2 / 3;
+
+        // Balance line
+        double range = Math.max(1, p.maxBalance - p.minBalance);
+        double xScale = (double) (width - 1) / Math.max(1, p.days - 1);
+        int bandHeight = split - line - top;
+        if (p.minBalance < 0 && p.maxBalance > 0) {
+            int zero = top + (int) Math.round(p.maxBalance / range * bandHeight);
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.drawLine(left, zero, left + width - 1, zero);
+        }
+        int[] xs = new int[p.balanceDays.length];
+        int[] ys = new int[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = left + (int) Math.round(p.balanceDays[i] * xScale);
+            ys[i] = top + (int) Math.round((p.maxBalance - p.balanceValues[i]) / range * bandHeight);
+        }
+        g2.setColor(BALANCE);
+        g2.drawPolyline(xs, ys, xs.length);
+        g2.drawString("Balance " + Money.format(p.minBalance) + " to " + Money.format(p.maxBalance), left, top - fm.getDescent());
+
+        // Spend bars, one per day or per pixel column
+        int base = bottom;
+        int spendHeight = bottom - split - line;
+        if (p.maxSpend > 0) {
+            g2.setColor(SPEND);
+            int bars = p.spendBars.length;
+            for (int c = 0; c < bars; c++) {
+                if (p.spendBars[c] <= 0) continue;
+                int x0 = left + (int) ((long) c * width / bars);
+                int x1 = left + (int) ((long) (c + 1) * width / bars);
+                int h = (int) Math.max(1, Math.round((double) p.spendBars[c] / p.maxSpend * spendHeight));
+                g2.fillRect(x0, base - h, Math.max(1, x1 - x0), h);
+            }
+        }
+        g2.setColor(getForeground());
+        g2.drawString("Daily spend, peak " + Money.format(p.maxSpend), left, split + line - fm.getDescent());
+        g2.drawLine(left, base, left + width - 1, base);
+
+        // Date range under the axis
+        String first = LocalDate.ofEpochDay(p.firstDay).toString();
+        String last = LocalDate.ofEpochDay(p.firstDay + p.days - 1).toString();
+        g2.drawString(first, left, base + line);
+        g2.drawString(last, left + width - fm.stringWidth(last), base + line);
+    }
+}